@@ -0,0 +1,35 @@
+package com.sirios.androidurlrouter.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maps one or more routes to the annotated activity, fragment or router action.<br/>
+ * The routes are collected at compile time by the androidurlrouter-compiler annotation processor,
+ * which generates a <code>GeneratedRouteTable</code> class holding the routes already parsed and validated:
+ *
+ * <pre>
+ * &#64;Route("app://www.app.com/laws/i:{lawId}")
+ * public class LawFragment extends Fragment { ... }
+ *
+ * Router.getInstance().registerAll(GeneratedRouteTable.routes());
+ * </pre>
+ *
+ * Router actions must have a public no argument constructor. Since they usually refer to
+ * <code>com.sirios.androidurlrouter.Route</code> too, they may use the fully qualified name of this annotation.
+ *
+ * @author S1ri0S
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Route {
+
+    /**
+     * @return The routes to map to the annotated class
+     */
+    String[] value();
+}
@@ -0,0 +1,303 @@
+package com.sirios.androidurlrouter.compiler;
+
+import com.sirios.androidurlrouter.CompiledRoute;
+import com.sirios.androidurlrouter.RouteConflicts;
+import com.sirios.androidurlrouter.RouteKind;
+import com.sirios.androidurlrouter.annotation.Route;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor generating a route table out of the classes annotated with {@link Route}.<br/>
+ * The routes are parsed and checked for conflicts at compile time, the way the router checks them when
+ * registering them; duplicate or ambiguous routes fail the build.
+ * The generated <code>GeneratedRouteTable</code> class adds the routes to a
+ * <code>RouteTable.Builder</code> already compiled, so registering them does no parsing,
+ * reflection or resource lookups.<br/>
+ * The generated class is placed in the package given by the <code>androidurlrouter.package</code>
+ * processor option, or else in the package of the first annotated class.
+ *
+ * @author S1ri0S
+ */
+public class RouteProcessor extends AbstractProcessor {
+
+    public static final String OPTION_PACKAGE = "androidurlrouter.package";
+    static final String GENERATED_CLASS = "GeneratedRouteTable";
+
+    private static final String ACTIVITY = "android.app.Activity";
+    private static final String FRAGMENT = "android.app.Fragment";
+    private static final String ROUTER_ACTION = "com.sirios.androidurlrouter.RouterAction";
+
+    private boolean generated;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Route.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_PACKAGE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        List<TypeElement> elements = new ArrayList<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Route.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@Route can only be applied to classes");
+                continue;
+            }
+            elements.add((TypeElement) element);
+        }
+
+        if (elements.isEmpty()) {
+            return false;
+        }
+        if (generated) {
+            error(elements.get(0), "@Route classes generated by other annotation processors are not supported");
+            return false;
+        }
+
+        Collections.sort(elements, new Comparator<TypeElement>() {
+            @Override
+            public int compare(TypeElement a, TypeElement b) {
+                return a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString());
+            }
+        });
+
+        List<MappedRoute> routes = new ArrayList<>();
+        RouteConflicts conflicts = new RouteConflicts();
+        boolean valid = true;
+
+        for (TypeElement element : elements) {
+            RouteKind kind = kindOf(element);
+            if (kind == null) {
+                error(element, "@Route can only be applied to subclasses of " + ACTIVITY + ", " + FRAGMENT
+                        + " or " + ROUTER_ACTION);
+                valid = false;
+                continue;
+            }
+            if (!isInstantiable(element, kind)) {
+                valid = false;
+                continue;
+            }
+
+            for (String pattern : new LinkedHashSet<>(Arrays.asList(element.getAnnotation(Route.class).value()))) {
+                MappedRoute route = new MappedRoute(CompiledRoute.compile(pattern), kind, element);
+                MappedRoute conflict = (MappedRoute) conflicts.add(route.compiled, kind, route);
+
+                if (conflict != null) {
+                    error(element, "The route " + pattern + " conflicts with the route "
+                            + conflict.compiled.getRoute() + " mapped to " + conflict.element.getQualifiedName()
+                            + ", both match the same urls");
+                    valid = false;
+                    continue;
+                }
+
+                routes.add(route);
+            }
+        }
+
+        if (valid) {
+            generate(packageOf(elements.get(0)), routes, elements);
+        }
+        generated = true;
+
+        return true;
+    }
+
+    private RouteKind kindOf(TypeElement element) {
+        TypeMirror type = processingEnv.getTypeUtils().erasure(element.asType());
+
+        if (isSubtype(type, ACTIVITY)) {
+            return RouteKind.ACTIVITY;
+        } else if (isSubtype(type, FRAGMENT)) {
+            return RouteKind.FRAGMENT;
+        } else if (isSubtype(type, ROUTER_ACTION)) {
+            return RouteKind.ACTION;
+        }
+        return null;
+    }
+
+    private boolean isSubtype(TypeMirror type, String superclass) {
+        TypeElement superElement = processingEnv.getElementUtils().getTypeElement(superclass);
+        return superElement != null && processingEnv.getTypeUtils().isSubtype(type,
+                processingEnv.getTypeUtils().erasure(superElement.asType()));
+    }
+
+    private boolean isInstantiable(TypeElement element, RouteKind kind) {
+        if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+            error(element, "@Route classes must be public");
+            return false;
+        }
+        if (kind != RouteKind.ACTION) {
+            return true;
+        }
+        if (element.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(element, "@Route router actions must not be abstract");
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        error(element, "@Route router actions must have a public no argument constructor");
+        return false;
+    }
+
+    private String packageOf(TypeElement element) {
+        String option = processingEnv.getOptions().get(OPTION_PACKAGE);
+        if (option != null && !option.isEmpty()) {
+            return option;
+        }
+
+        Element enclosing = element;
+        while (!(enclosing instanceof PackageElement)) {
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return ((PackageElement) enclosing).getQualifiedName().toString();
+    }
+
+    private void generate(String packageName, List<MappedRoute> routes, List<TypeElement> elements) {
+        StringBuilder source = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.sirios.androidurlrouter.CompiledRoute;\n")
+                .append("import com.sirios.androidurlrouter.RouteTable;\n\n")
+                .append("/**\n")
+                .append(" * Routes mapped with {@code @Route}, generated by ")
+                .append(RouteProcessor.class.getName()).append(". Do not modify.\n")
+                .append(" */\n")
+                .append("public final class ").append(GENERATED_CLASS).append(" {\n\n")
+                .append("    private ").append(GENERATED_CLASS).append("() {\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * @return A builder holding the compiled routes, to register with Router.registerAll\n")
+                .append("     */\n")
+                .append("    public static RouteTable.Builder routes() {\n")
+                .append("        return RouteTable.builder()");
+
+        for (MappedRoute route : routes) {
+            CompiledRoute compiled = route.compiled;
+
+            source.append("\n                .").append(builderMethod(route.kind)).append("(CompiledRoute.precompiled(")
+                    .append(literal(compiled.getRoute())).append(", ")
+                    .append(literal(compiled.getScheme())).append(", ")
+                    .append(literal(compiled.getHost())).append(",\n                        new String[]{");
+            for (int i = 0; i < compiled.getSegmentCount(); i++) {
+                source.append(i > 0 ? ", " : "").append(literal(compiled.getSegment(i)));
+            }
+            source.append("}, new byte[]{");
+            for (int i = 0; i < compiled.getSegmentCount(); i++) {
+                source.append(i > 0 ? ", " : "").append(compiled.getSegmentType(i));
+            }
+            source.append("}),\n                        ");
+
+            if (route.kind == RouteKind.ACTION) {
+                source.append("new ").append(route.element.getQualifiedName()).append("())");
+            } else {
+                source.append(route.element.getQualifiedName()).append(".class)");
+            }
+        }
+        source.append(";\n    }\n}\n");
+
+        String className = packageName.isEmpty() ? GENERATED_CLASS : packageName + "." + GENERATED_CLASS;
+        try {
+            JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(className, elements.toArray(new Element[elements.size()]));
+            Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not generate " + className + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The name of the <code>RouteTable.Builder</code> method adding routes of the given kind
+     */
+    private static String builderMethod(RouteKind kind) {
+        switch (kind) {
+            case ACTIVITY:
+                return "addActivityRoute";
+            case FRAGMENT:
+                return "addFragmentRoute";
+            default:
+                return "addActionRoute";
+        }
+    }
+
+    /**
+     * @return The value as a java string literal
+     */
+    static String literal(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static final class MappedRoute {
+        final CompiledRoute compiled;
+        final RouteKind kind;
+        final TypeElement element;
+
+        MappedRoute(CompiledRoute compiled, RouteKind kind, TypeElement element) {
+            this.compiled = compiled;
+            this.kind = kind;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.sirios.androidurlrouter.compiler;
+
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.junit.Assert.assertEquals;
+
+public class RouteProcessorTest {
+
+    /* Stand-ins for the framework and router classes the processor and the generated table refer to */
+    private static final JavaFileObject ACTIVITY = JavaFileObjects.forSourceLines("android.app.Activity",
+            "package android.app;",
+            "public class Activity {",
+            "}");
+    private static final JavaFileObject FRAGMENT = JavaFileObjects.forSourceLines("android.app.Fragment",
+            "package android.app;",
+            "public class Fragment {",
+            "}");
+    private static final JavaFileObject ROUTER_ACTION = JavaFileObjects.forSourceLines("com.sirios.androidurlrouter.RouterAction",
+            "package com.sirios.androidurlrouter;",
+            "public abstract class RouterAction {",
+            "}");
+    private static final JavaFileObject ROUTE_TABLE = JavaFileObjects.forSourceLines("com.sirios.androidurlrouter.RouteTable",
+            "package com.sirios.androidurlrouter;",
+            "public final class RouteTable {",
+            "    public static Builder builder() {",
+            "        return new Builder();",
+            "    }",
+            "    public static final class Builder {",
+            "        public Builder addActivityRoute(CompiledRoute route, Class<? extends android.app.Activity> clazz) {",
+            "            return this;",
+            "        }",
+            "        public Builder addFragmentRoute(CompiledRoute route, Class<? extends android.app.Fragment> clazz) {",
+            "            return this;",
+            "        }",
+            "        public Builder addActionRoute(CompiledRoute route, RouterAction action) {",
+            "            return this;",
+            "        }",
+            "    }",
+            "}");
+
+    private static List<JavaFileObject> withFramework(JavaFileObject... sources) {
+        List<JavaFileObject> files = new ArrayList<>(Arrays.asList(ACTIVITY, FRAGMENT, ROUTER_ACTION, ROUTE_TABLE));
+        files.addAll(Arrays.asList(sources));
+        return files;
+    }
+
+    @Test
+    public void testGeneratedRouteTable() throws Exception {
+        JavaFileObject articles = JavaFileObjects.forSourceLines("test.ArticlesFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route({\"app://www.app.com/laws/i:{lawId}/articles/i:{articleId}\", \"app://www.app.com/articles\"})",
+                "public class ArticlesFragment extends android.app.Fragment {",
+                "}");
+        JavaFileObject files = JavaFileObjects.forSourceLines("test.FilesAction",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/files/s:{name}\")",
+                "public class FilesAction extends com.sirios.androidurlrouter.RouterAction {",
+                "}");
+        JavaFileObject main = JavaFileObjects.forSourceLines("test.MainActivity",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com\")",
+                "public class MainActivity extends android.app.Activity {",
+                "}");
+
+        JavaFileObject expected = JavaFileObjects.forSourceLines("test.GeneratedRouteTable",
+                "package test;",
+                "",
+                "import com.sirios.androidurlrouter.CompiledRoute;",
+                "import com.sirios.androidurlrouter.RouteTable;",
+                "",
+                "public final class GeneratedRouteTable {",
+                "",
+                "    private GeneratedRouteTable() {",
+                "    }",
+                "",
+                "    public static RouteTable.Builder routes() {",
+                "        return RouteTable.builder()",
+                "                .addFragmentRoute(CompiledRoute.precompiled(\"app://www.app.com/laws/i:{lawId}/articles/i:{articleId}\", \"app\", \"www.app.com\",",
+                "                        new String[]{\"laws\", \"lawId\", \"articles\", \"articleId\"}, new byte[]{0, 1, 0, 1}),",
+                "                        test.ArticlesFragment.class)",
+                "                .addFragmentRoute(CompiledRoute.precompiled(\"app://www.app.com/articles\", \"app\", \"www.app.com\",",
+                "                        new String[]{\"articles\"}, new byte[]{0}),",
+                "                        test.ArticlesFragment.class)",
+                "                .addActionRoute(CompiledRoute.precompiled(\"app://www.app.com/files/s:{name}\", \"app\", \"www.app.com\",",
+                "                        new String[]{\"files\", \"name\"}, new byte[]{0, 2}),",
+                "                        new test.FilesAction())",
+                "                .addActivityRoute(CompiledRoute.precompiled(\"app://www.app.com\", \"app\", \"www.app.com\",",
+                "                        new String[]{}, new byte[]{}),",
+                "                        test.MainActivity.class);",
+                "    }",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(main, files, articles))
+                .processedWith(new RouteProcessor())
+                .compilesWithoutError()
+                .and().generatesSources(expected);
+    }
+
+    @Test
+    public void testDuplicateRoutesFail() throws Exception {
+        JavaFileObject first = JavaFileObjects.forSourceLines("test.FirstFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/laws/i:{lawId}\")",
+                "public class FirstFragment extends android.app.Fragment {",
+                "}");
+        JavaFileObject second = JavaFileObjects.forSourceLines("test.SecondFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/laws/i:{id}\")",
+                "public class SecondFragment extends android.app.Fragment {",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(first, second))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("The route app://www.app.com/laws/i:{id} conflicts with the route "
+                        + "app://www.app.com/laws/i:{lawId} mapped to test.FirstFragment")
+                .in(second).onLine(4);
+    }
+
+    @Test
+    public void testAmbiguousRoutesFail() throws Exception {
+        JavaFileObject news = JavaFileObjects.forSourceLines("test.NewsFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/news/i:{id}/{slug?}\")",
+                "public class NewsFragment extends android.app.Fragment {",
+                "}");
+        JavaFileObject plain = JavaFileObjects.forSourceLines("test.PlainNewsFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/news/i:{id}\")",
+                "public class PlainNewsFragment extends android.app.Fragment {",
+                "}");
+        JavaFileObject titled = JavaFileObjects.forSourceLines("test.TitledNewsFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/news/i:{newsId}/s:{title}\")",
+                "public class TitledNewsFragment extends android.app.Fragment {",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(news, plain))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("The route app://www.app.com/news/i:{id} conflicts with the route "
+                        + "app://www.app.com/news/i:{id}/{slug?} mapped to test.NewsFragment")
+                .in(plain).onLine(4);
+
+        assertAbout(javaSources()).that(withFramework(news, titled))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("The route app://www.app.com/news/i:{newsId}/s:{title} conflicts with the route "
+                        + "app://www.app.com/news/i:{id}/{slug?} mapped to test.NewsFragment")
+                .in(titled).onLine(4);
+    }
+
+    @Test
+    public void testNonPublicClassFails() throws Exception {
+        JavaFileObject hidden = JavaFileObjects.forSourceLines("test.HiddenFragment",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/hidden\")",
+                "class HiddenFragment extends android.app.Fragment {",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(hidden))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("@Route classes must be public")
+                .in(hidden).onLine(4);
+    }
+
+    @Test
+    public void testActionWithoutConstructorFails() throws Exception {
+        JavaFileObject action = JavaFileObjects.forSourceLines("test.ShareAction",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/share/s:{text}\")",
+                "public class ShareAction extends com.sirios.androidurlrouter.RouterAction {",
+                "    public ShareAction(String text) {",
+                "    }",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(action))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("@Route router actions must have a public no argument constructor")
+                .in(action).onLine(4);
+    }
+
+    @Test
+    public void testWrongSupertypeFails() throws Exception {
+        JavaFileObject plain = JavaFileObjects.forSourceLines("test.PlainClass",
+                "package test;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/plain\")",
+                "public class PlainClass {",
+                "}");
+
+        assertAbout(javaSources()).that(withFramework(plain))
+                .processedWith(new RouteProcessor())
+                .failsToCompile()
+                .withErrorContaining("@Route can only be applied to subclasses of android.app.Activity")
+                .in(plain).onLine(4);
+    }
+
+    @Test
+    public void testLiteral() throws Exception {
+        assertEquals(RouteProcessor.literal(null), "null");
+        assertEquals(RouteProcessor.literal("a\"b\\cé"), "\"a\\\"b\\\\c\\u00e9\"");
+    }
+}
@@ -0,0 +1,277 @@
+package com.sirios.androidurlrouter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, pre-parsed form of a mapped route.<br/>
+ * Every path segment is either a literal or a typed wildcard slot (<code>i:{name}</code> or
+ * <code>s:{name}</code>), so matching a given route never needs to parse the mapped route again.
+ * The last path segment may also be an optional string wildcard (<code>{name?}</code>), e.g. for the
+ * slug of <code>app://www.app.com/articles/i:{articleId}/{slug?}</code>, which matches with or without it.
+ * The host may be a wildcard for its subdomains, e.g. <code>https://*.app.com/promo</code>.<br/>
+ * Routes can also be compiled ahead of time, as the androidurlrouter-compiler annotation processor does,
+ * and added to a <code>RouteTable.Builder</code> as they are.
+ *
+ * @author S1ri0S
+ */
+public final class CompiledRoute {
+
+    public static final byte SEGMENT_LITERAL = 0;
+    public static final byte SEGMENT_INT = 1;
+    public static final byte SEGMENT_STRING = 2;
+    /* Only allowed as the last segment */
+    public static final byte SEGMENT_OPTIONAL_STRING = 3;
+
+    private final String route;
+    private final String scheme;
+    private final String host;
+    /* See hostSuffix(String) */
+    private final String hostSuffix;
+    /* The literal value of literal segments, the wildcard name of wildcard segments */
+    private final String[] segments;
+    private final byte[] types;
+    /* The names of the wildcard segments, in path order */
+    private final String[] wildcardNames;
+
+    private CompiledRoute(String route, String scheme, String host, String[] segments, byte[] types) {
+        this.route = route;
+        this.scheme = scheme;
+        this.host = host;
+        this.hostSuffix = hostSuffix(host);
+        this.segments = segments;
+        this.types = types;
+
+        int wildcardCount = 0;
+        for (byte type : types) {
+            if (type != SEGMENT_LITERAL) {
+                wildcardCount++;
+            }
+        }
+        wildcardNames = new String[wildcardCount];
+        for (int i = 0, j = 0; i < types.length; i++) {
+            if (types[i] != SEGMENT_LITERAL) {
+                wildcardNames[j++] = segments[i];
+            }
+        }
+    }
+
+    /**
+     * Parse a mapped route
+     *
+     * @param route The mapped route
+     * @return The compiled route
+     */
+    public static CompiledRoute compile(String route) {
+        /* The ? of an optional wildcard would otherwise start the query */
+        int tailStart = route.lastIndexOf('/') + 1;
+        String optionalName = tailStart > 0 ? SegmentMatchers.optionalWildcardName(route, tailStart, route.length()) : null;
+
+        RouteUrl url = RouteUrl.parse(optionalName != null ? route.substring(0, tailStart - 1) : route, false);
+        int count = url.getSegmentCount();
+        String[] segments = new String[optionalName != null ? count + 1 : count];
+        byte[] types = new byte[segments.length];
+
+        if (optionalName != null) {
+            segments[count] = optionalName;
+            types[count] = SEGMENT_OPTIONAL_STRING;
+        }
+
+        for (int i = 0; i < count; i++) {
+            String segment = url.getSegment(i);
+            String name;
+
+            if ((name = SegmentMatchers.wildcardName(segment, SegmentMatchers.INT_WILDCARD_PREFIX)) != null) {
+                segments[i] = name;
+                types[i] = SEGMENT_INT;
+            } else if ((name = SegmentMatchers.wildcardName(segment, SegmentMatchers.STRING_WILDCARD_PREFIX)) != null) {
+                segments[i] = name;
+                types[i] = SEGMENT_STRING;
+            } else {
+                segments[i] = segment;
+                types[i] = SEGMENT_LITERAL;
+            }
+        }
+
+        return new CompiledRoute(route, url.getScheme(), url.getHost(), segments, types);
+    }
+
+    /**
+     * Create a route that was compiled ahead of time, e.g. by generated code
+     *
+     * @param route    The mapped route
+     * @param scheme   The scheme of the route
+     * @param host     The host of the route
+     * @param segments For each path segment, its literal value or its wildcard name
+     * @param types    For each path segment, its type ({@link #SEGMENT_LITERAL}, {@link #SEGMENT_INT},
+     *                 {@link #SEGMENT_STRING} or, for the last one, {@link #SEGMENT_OPTIONAL_STRING})
+     * @return The compiled route
+     */
+    public static CompiledRoute precompiled(String route, String scheme, String host, String[] segments, byte[] types) {
+        if (segments.length != types.length) {
+            throw new IllegalArgumentException("Every segment of " + route + " must have a type");
+        }
+        for (int i = 0; i < types.length - 1; i++) {
+            if (types[i] == SEGMENT_OPTIONAL_STRING) {
+                throw new IllegalArgumentException("Only the last segment of " + route + " may be optional");
+            }
+        }
+        return new CompiledRoute(route, scheme, host, segments.clone(), types.clone());
+    }
+
+    /**
+     * @return The route with its wildcard names stripped, e.g. <code>app://host/laws/i:{}</code>.
+     * Routes with the same normalized form match exactly the same urls.
+     */
+    public String getNormalizedRoute() {
+        StringBuilder builder = new StringBuilder();
+        if (scheme != null) {
+            builder.append(scheme).append(':');
+        }
+        if (host != null) {
+            builder.append("//").append(host);
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            builder.append('/');
+            switch (types[i]) {
+                case SEGMENT_INT:
+                    builder.append(SegmentMatchers.INT_WILDCARD_PREFIX).append('}');
+                    break;
+                case SEGMENT_STRING:
+                    builder.append(SegmentMatchers.STRING_WILDCARD_PREFIX).append('}');
+                    break;
+                case SEGMENT_OPTIONAL_STRING:
+                    builder.append("{?}");
+                    break;
+                default:
+                    builder.append(segments[i]);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Check whether a path segment of a given url satisfies a segment of the given type.
+     * Int wildcards accept any value that fits in a long.
+     */
+    static boolean accepts(byte type, String literal, RouteUrl url, int index) {
+        switch (type) {
+            case SEGMENT_INT:
+                CharSequence source = url.segmentSource(index);
+                int start = url.segmentStart(index);
+                int end = url.segmentEnd(index);
+                return SegmentMatchers.isIntValue(source, start, end) && SegmentMatchers.parseLong(source, start, end) != -1;
+            case SEGMENT_STRING:
+            case SEGMENT_OPTIONAL_STRING:
+                return SegmentMatchers.isStringValue(url.segmentSource(index), url.segmentStart(index), url.segmentEnd(index));
+            default:
+                return url.segmentEquals(index, literal);
+        }
+    }
+
+    /**
+     * @param host The host of a mapped route
+     * @return The suffix matching hosts must end with if the host is a wildcard
+     * (e.g. <code>.app.com</code> for <code>*.app.com</code>), null otherwise
+     */
+    static String hostSuffix(String host) {
+        return host != null && host.length() > 2 && host.startsWith("*.") ? host.substring(1) : null;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public String getSegment(int index) {
+        return segments[index];
+    }
+
+    public byte getSegmentType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return The names of the wildcard segments, in path order. The array must not be modified.
+     */
+    String[] wildcardNames() {
+        return wildcardNames;
+    }
+
+    /**
+     * @return true if the last segment is an optional wildcard
+     */
+    boolean hasOptionalTail() {
+        return types.length > 0 && types[types.length - 1] == SEGMENT_OPTIONAL_STRING;
+    }
+
+    /**
+     * @return true if a given url matched by this route holds a value for the segment at the given index,
+     * which is only false for an absent optional wildcard. A trailing slug stripped from the url is such a value.
+     */
+    static boolean hasValue(RouteUrl url, int index) {
+        return index < url.getSegmentCount() || (index == url.getSegmentCount() && url.hasStrippedSlug());
+    }
+
+    /**
+     * Match this route against a given url
+     *
+     * @param url The given url
+     * @return true if the given url matches
+     */
+    boolean matches(RouteUrl url) {
+        int count = url.getSegmentCount();
+        if (!url.schemeEquals(scheme) || !(hostSuffix != null ? url.hostHasSuffix(hostSuffix) : url.hostEquals(host))
+                || (count != segments.length && !(hasOptionalTail() && count == segments.length - 1))) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!accepts(types[i], segments[i], url, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extract the wildcard values of a given route matched by this route.
+     * Int values are Integers, or Longs if they do not fit in an int.
+     *
+     * @return The wildcards or null if this route has none
+     */
+    Map<String, Comparable> extractWildcards(RouteUrl url) {
+        Map<String, Comparable> args = null;
+
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == SEGMENT_LITERAL || !hasValue(url, i)) {
+                continue;
+            }
+            if (args == null) {
+                args = new HashMap<>();
+            }
+
+            if (types[i] == SEGMENT_INT) {
+                long value = SegmentMatchers.parseLong(url.segmentSource(i), url.segmentStart(i), url.segmentEnd(i));
+                args.put(segments[i], value <= Integer.MAX_VALUE ? (Comparable) (int) value : (Comparable) value);
+            } else {
+                args.put(segments[i], url.getSegment(i));
+            }
+        }
+
+        return args;
+    }
+}
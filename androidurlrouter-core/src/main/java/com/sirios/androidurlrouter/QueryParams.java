@@ -0,0 +1,157 @@
+package com.sirios.androidurlrouter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of the query parameters of a given route.<br/>
+ * Only the raw query is kept when the route is resolved; it is decoded the first time the view is read,
+ * so routes whose targets never read their query parameters (e.g. tracking parameters) do not pay for them.<br/>
+ * As a map, the view holds the first value of each parameter, like <code>android.net.Uri#getQueryParameter(String)</code>.
+ * Every value of a repeated parameter is available through {@link #getAll(String)}.
+ * Like Uri, <code>+</code> is decoded to a space in values.<br/>
+ * Views can be shared between threads.
+ *
+ * @author S1ri0S
+ */
+final class QueryParams extends AbstractMap<String, String> {
+
+    static final QueryParams EMPTY = new QueryParams("", 0, 0);
+
+    private final String url;
+    private final int start;
+    private final int end;
+    private volatile Decoded decoded;
+
+    /**
+     * @param url   The given route
+     * @param start The start of the query, after the <code>?</code>
+     * @param end   The end of the query
+     */
+    QueryParams(String url, int start, int end) {
+        this.url = url;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return true if the query is empty, without decoding it
+     */
+    boolean isRawEmpty() {
+        return start >= end;
+    }
+
+    /**
+     * @return Every value of the given parameter in query order, an empty list if it is absent
+     */
+    List<String> getAll(String name) {
+        Decoded decoded = decoded();
+        List<String> values = null;
+
+        for (int i = 0; i < decoded.names.length; i++) {
+            if (decoded.names[i].equals(name)) {
+                if (values == null) {
+                    values = new ArrayList<>(2);
+                }
+                values.add(decoded.values[i]);
+            }
+        }
+        return values != null ? Collections.unmodifiableList(values) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return true if a parameter is given more than once
+     */
+    boolean hasRepeatedNames() {
+        Decoded decoded = decoded();
+        return decoded.names.length > decoded.firstValues.size();
+    }
+
+    @Override
+    public String get(Object key) {
+        return decoded().firstValues.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().firstValues.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return decoded().firstValues.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return isRawEmpty() || decoded().firstValues.isEmpty();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return decoded().firstValues.entrySet();
+    }
+
+    private Decoded decoded() {
+        Decoded decoded = this.decoded;
+        if (decoded == null) {
+            /* Concurrent readers may decode the query more than once, always to the same result */
+            decoded = decode();
+            this.decoded = decoded;
+        }
+        return decoded;
+    }
+
+    private Decoded decode() {
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+
+        int pairStart = start;
+        while (pairStart <= end && start < end) {
+            int pairEnd = url.indexOf('&', pairStart);
+            if (pairEnd == -1 || pairEnd > end) {
+                pairEnd = end;
+            }
+
+            if (pairEnd > pairStart) {
+                int equals = url.indexOf('=', pairStart);
+
+                if (equals == -1 || equals > pairEnd) {
+                    names.add(RouteUrl.decode(url, pairStart, pairEnd, false));
+                    values.add("");
+                } else {
+                    names.add(RouteUrl.decode(url, pairStart, equals, false));
+                    values.add(RouteUrl.decode(url, equals + 1, pairEnd, true));
+                }
+            }
+            pairStart = pairEnd + 1;
+        }
+
+        Map<String, String> firstValues = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (!firstValues.containsKey(names.get(i))) {
+                firstValues.put(names.get(i), values.get(i));
+            }
+        }
+
+        return new Decoded(names.toArray(new String[names.size()]), values.toArray(new String[values.size()]),
+                Collections.unmodifiableMap(firstValues));
+    }
+
+    private static final class Decoded {
+        final String[] names;
+        final String[] values;
+        final Map<String, String> firstValues;
+
+        Decoded(String[] names, String[] values, Map<String, String> firstValues) {
+            this.names = names;
+            this.values = values;
+            this.firstValues = firstValues;
+        }
+    }
+}
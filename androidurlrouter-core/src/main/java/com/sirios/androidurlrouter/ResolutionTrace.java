@@ -0,0 +1,11 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * What a single resolution went through, collected for the <code>RouterMetrics</code>
+ *
+ * @author S1ri0S
+ */
+final class ResolutionTrace {
+    boolean cacheHit;
+    int candidatesExamined;
+}
@@ -0,0 +1,33 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * Routes checked for conflicts as they are added, with the same index the router maps them to.<br/>
+ * Two routes conflict if they match the same urls: routes differing only in their wildcard names, or a
+ * route ending with an optional wildcard and a route matching it with or without the wildcard
+ * (e.g. <code>/news/i:{id}/{slug?}</code> and either <code>/news/i:{id}</code> or <code>/news/i:{id}/s:{title}</code>).
+ * This lets the annotation processor reject at compile time the routes the router would reject when registering them.
+ *
+ * @author S1ri0S
+ */
+public final class RouteConflicts {
+
+    private final RouteIndex.Builder index = RouteIndex.EMPTY.newBuilder();
+
+    /**
+     * Add a route unless it conflicts with a route already added
+     *
+     * @param route  The route to map
+     * @param kind   The kind of routable the route is mapped to
+     * @param target The routable, or anything identifying it
+     * @return The target of the route the given one conflicts with, or null if the route was added
+     */
+    public Object add(CompiledRoute route, RouteKind kind, Object target) {
+        RouteIndex.Entry conflict = index.findConflict(route);
+        if (conflict != null) {
+            return conflict.target;
+        }
+
+        index.add(route, kind, target);
+        return null;
+    }
+}
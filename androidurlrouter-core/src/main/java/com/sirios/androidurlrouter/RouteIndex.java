@@ -0,0 +1,522 @@
+package com.sirios.androidurlrouter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Compiled index of the mapped routes.<br/>
+ * Routes are stored in a segment trie keyed by scheme, host and then by path segment, where
+ * <code>i:{}</code> and <code>s:{}</code> wildcards are typed edges of their own. Resolving a given
+ * route therefore costs in the order of its path depth instead of the number of mapped routes.<br/>
+ * The tries of each scheme and host are found through a hash table queried with the scheme and host of the
+ * given url in place, so urls of foreign hosts are rejected in constant time. Hosts may also be wildcards
+ * (e.g. <code>*.app.com</code>, matching <code>www.app.com</code> but not <code>app.com</code>), tried in
+ * order of decreasing specificity only if the exact host matches nothing.<br/>
+ * Since edges only carry the type of wildcards, a trie node stands for a normalized route (its
+ * wildcard names stripped) and holds at most one mapped route. Finding the mapped route a new
+ * route would conflict with is thus a single walk down the trie. A route ending with an optional
+ * wildcard is held both by the node of its path without the wildcard and by the string wildcard child of that node.<br/>
+ * An index is immutable: routes are added through a {@link Builder}, which copies the trie nodes
+ * it touches the first time and then edits its copies in place. The built index shares every
+ * untouched node with the one it was derived from. Indexes can thus be read from any thread
+ * without locking.
+ *
+ * @author S1ri0S
+ */
+final class RouteIndex {
+
+    static final RouteIndex EMPTY = new RouteIndex(new Root[0], null, 0);
+
+    private final Root[] roots;
+    /* Open addressing table of the roots of exact hosts, by hash of scheme and host */
+    private final Root[] hostTable;
+    /* Roots of wildcard hosts, longest suffix first */
+    private final Root[] wildcardRoots;
+    /* The most recently added entry, entries are linked in registration order through Entry.previous */
+    private final Entry last;
+    private final int size;
+
+    private RouteIndex(Root[] roots, Entry last, int size) {
+        this.roots = roots;
+        this.last = last;
+        this.size = size;
+
+        List<Root> wildcards = new ArrayList<>();
+        int capacity = 2;
+        while (capacity < roots.length * 2) {
+            capacity <<= 1;
+        }
+        hostTable = new Root[capacity];
+
+        for (Root root : roots) {
+            if (root.hostSuffix != null) {
+                wildcards.add(root);
+                continue;
+            }
+            int i = root.hash & (capacity - 1);
+            while (hostTable[i] != null) {
+                i = (i + 1) & (capacity - 1);
+            }
+            hostTable[i] = root;
+        }
+
+        Collections.sort(wildcards, new Comparator<Root>() {
+            @Override
+            public int compare(Root a, Root b) {
+                return b.hostSuffix.length() - a.hostSuffix.length();
+            }
+        });
+        wildcardRoots = wildcards.toArray(new Root[wildcards.size()]);
+    }
+
+    /**
+     * Add a single mapped route to the index. The caller must make sure the route does not conflict
+     * with a mapped one (see {@link #findConflict(CompiledRoute)}).
+     *
+     * @param compiled The mapped route
+     * @param kind     The kind of routable the route is mapped to
+     * @param target   The routable
+     * @return A new index containing the route
+     */
+    RouteIndex add(CompiledRoute compiled, RouteKind kind, Object target) {
+        return newBuilder().add(compiled, kind, target).build();
+    }
+
+    /**
+     * @return A builder for an index containing the routes of this one
+     */
+    Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Find the mapped route that has the same normalized form as the given one
+     *
+     * @param compiled A route to map
+     * @return The entry of the conflicting route or null if there is none
+     */
+    Entry findConflict(CompiledRoute compiled) {
+        return findConflict(roots, compiled);
+    }
+
+    private static Entry findConflict(Root[] roots, CompiledRoute compiled) {
+        int i = rootIndex(roots, compiled.getScheme(), compiled.getHost());
+        if (i == -1) {
+            return null;
+        }
+
+        Node node = roots[i].node;
+        for (int depth = 0; node != null && depth < compiled.getSegmentCount(); depth++) {
+            if (compiled.getSegmentType(depth) == CompiledRoute.SEGMENT_OPTIONAL_STRING && node.entry != null) {
+                return node.entry;
+            }
+            node = node.child(compiled.getSegmentType(depth), compiled.getSegment(depth));
+        }
+
+        return node != null ? node.entry : null;
+    }
+
+    /**
+     * @return The mapped routes, in registration order
+     */
+    List<Entry> entries() {
+        Entry[] entries = new Entry[size];
+        for (Entry entry = last; entry != null; entry = entry.previous) {
+            entries[entry.order] = entry;
+        }
+
+        List<Entry> list = new ArrayList<>(size);
+        for (Entry entry : entries) {
+            list.add(entry);
+        }
+        return list;
+    }
+
+    /**
+     * @return The routes of the given kind mapped to their routables, in registration order
+     */
+    LinkedHashMap<String, Object> routes(RouteKind kind) {
+        LinkedHashMap<String, Object> routes = new LinkedHashMap<>();
+        for (Entry entry : entries()) {
+            if (entry.kind == kind) {
+                routes.put(entry.route.getRoute(), entry.target);
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Find the mapped route with the highest precedence matching the given url
+     *
+     * @param url The given url. Routes declaring an optional wildcard match it with or without its last segment.
+     * @return The matching entry or null if no mapped route matches
+     */
+    Entry match(RouteUrl url) {
+        return match(url, null);
+    }
+
+    /**
+     * @param trace Counts the trie nodes the url is compared with, may be null
+     * @see #match(RouteUrl)
+     */
+    Entry match(RouteUrl url, ResolutionTrace trace) {
+        Entry entry = null;
+
+        int mask = hostTable.length - 1;
+        for (int i = hostHash(url.schemeHashCode(), url.hostHashCode()) & mask; hostTable[i] != null; i = (i + 1) & mask) {
+            Root root = hostTable[i];
+            if (url.schemeEquals(root.scheme) && url.hostEquals(root.host)) {
+                entry = root.node.match(url, 0, null, trace);
+                break;
+            }
+        }
+
+        for (int i = 0; entry == null && i < wildcardRoots.length; i++) {
+            Root root = wildcardRoots[i];
+            if (url.hostHasSuffix(root.hostSuffix) && url.schemeEquals(root.scheme)) {
+                entry = root.node.match(url, 0, null, trace);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return The hash the roots of a scheme and host are looked up with
+     */
+    static int hostHash(int schemeHash, int hostHash) {
+        int hash = 31 * schemeHash + hostHash;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int rootIndex(Root[] roots, String scheme, String host) {
+        for (int i = 0; i < roots.length; i++) {
+            if (equal(roots[i].scheme, scheme) && equal(roots[i].host, host)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Builds a new index out of an existing one.<br/>
+     * Nodes of the existing index are never modified: each one is copied when the builder first
+     * needs to change it, and the copy is owned (and from then on edited in place) by the builder.
+     * Adding N routes thus costs in the order of N times the route depth.
+     */
+    static final class Builder {
+        private Object owner = new Object();
+        private Root[] roots;
+        private Entry last;
+        private int size;
+
+        private Builder(RouteIndex index) {
+            this.roots = index.roots.clone();
+            this.last = index.last;
+            this.size = index.size;
+        }
+
+        /**
+         * @see RouteIndex#findConflict(CompiledRoute)
+         */
+        Entry findConflict(CompiledRoute compiled) {
+            return RouteIndex.findConflict(roots, compiled);
+        }
+
+        /**
+         * @see RouteIndex#add(CompiledRoute, RouteKind, Object)
+         */
+        Builder add(CompiledRoute compiled, RouteKind kind, Object target) {
+            Entry entry = new Entry(compiled, kind, target, size, last);
+
+            int i = rootIndex(roots, compiled.getScheme(), compiled.getHost());
+            if (i == -1) {
+                Root[] newRoots = new Root[roots.length + 1];
+                System.arraycopy(roots, 0, newRoots, 0, roots.length);
+                newRoots[roots.length] = new Root(compiled.getScheme(), compiled.getHost(), new Node(owner));
+                roots = newRoots;
+                i = roots.length - 1;
+            }
+
+            Node node = roots[i].node.editable(owner);
+            if (node != roots[i].node) {
+                roots[i] = new Root(roots[i].scheme, roots[i].host, node);
+            }
+            node.insert(entry, 0, owner);
+
+            last = entry;
+            size++;
+            return this;
+        }
+
+        /**
+         * @return The index. The builder may be used further, without affecting the built index.
+         */
+        RouteIndex build() {
+            /* Nodes owned so far now belong to the built index */
+            owner = new Object();
+            return new RouteIndex(roots.clone(), last, size);
+        }
+    }
+
+    /**
+     * A mapped route along with its routable
+     */
+    static final class Entry {
+        final CompiledRoute route;
+        final RouteKind kind;
+        final Object target;
+        final int order;
+        final Entry previous;
+
+        Entry(CompiledRoute route, RouteKind kind, Object target, int order, Entry previous) {
+            this.route = route;
+            this.kind = kind;
+            this.target = target;
+            this.order = order;
+            this.previous = previous;
+        }
+
+        /**
+         * @return true if this entry should be chosen over the other one when both match
+         */
+        boolean precedes(Entry other) {
+            if (other == null) {
+                return true;
+            }
+            if (kind != other.kind) {
+                return kind.ordinal() < other.kind.ordinal();
+            }
+            return order < other.order;
+        }
+
+        /**
+         * @return The simple name of the routable class
+         */
+        String targetName() {
+            return target instanceof Class ? ((Class) target).getSimpleName() : target.getClass().getSimpleName();
+        }
+    }
+
+    private static final class Root {
+        final String scheme;
+        final String host;
+        final Node node;
+        final int hash;
+        /* The suffix hosts must end with if the host is a wildcard, e.g. .app.com for *.app.com */
+        final String hostSuffix;
+
+        Root(String scheme, String host, Node node) {
+            this.scheme = scheme;
+            this.host = host;
+            this.node = node;
+            this.hash = hostHash(scheme != null ? scheme.hashCode() : 0, host != null ? host.hashCode() : 0);
+            this.hostSuffix = CompiledRoute.hostSuffix(host);
+        }
+    }
+
+    /**
+     * Trie node. A node is only modified by the {@link Builder} owning it, before the index holding it is built.
+     */
+    private static final class Node {
+        private final Object owner;
+        private LiteralTable literals;
+        private Node intChild;
+        private Node stringChild;
+        /* The mapped route ending at this node */
+        private Entry entry;
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * @return This node if it is owned by the given owner, an owned copy of it otherwise
+         */
+        Node editable(Object owner) {
+            if (this.owner == owner) {
+                return this;
+            }
+
+            Node copy = new Node(owner);
+            copy.literals = literals;
+            copy.intChild = intChild;
+            copy.stringChild = stringChild;
+            copy.entry = entry;
+            return copy;
+        }
+
+        Node child(byte type, String segment) {
+            switch (type) {
+                case CompiledRoute.SEGMENT_INT:
+                    return intChild;
+                case CompiledRoute.SEGMENT_STRING:
+                case CompiledRoute.SEGMENT_OPTIONAL_STRING:
+                    return stringChild;
+                default:
+                    return literals != null ? literals.get(segment) : null;
+            }
+        }
+
+        /**
+         * Add the entry below this node, which must be owned by the given owner
+         */
+        void insert(Entry entry, int depth, Object owner) {
+            CompiledRoute route = entry.route;
+
+            if (depth == route.getSegmentCount()) {
+                this.entry = entry;
+                return;
+            }
+
+            byte type = route.getSegmentType(depth);
+            String segment = route.getSegment(depth);
+            if (type == CompiledRoute.SEGMENT_OPTIONAL_STRING) {
+                /* Matched without the optional wildcard too */
+                this.entry = entry;
+            }
+            Node child = child(type, segment);
+            Node editableChild = child != null ? child.editable(owner) : new Node(owner);
+
+            if (editableChild != child) {
+                switch (type) {
+                    case CompiledRoute.SEGMENT_INT:
+                        intChild = editableChild;
+                        break;
+                    case CompiledRoute.SEGMENT_STRING:
+                    case CompiledRoute.SEGMENT_OPTIONAL_STRING:
+                        stringChild = editableChild;
+                        break;
+                    default:
+                        literals = (literals != null ? literals : LiteralTable.EMPTY).editable(owner);
+                        literals.put(segment, editableChild);
+                        break;
+                }
+            }
+            editableChild.insert(entry, depth + 1, owner);
+        }
+
+        /**
+         * Walk every branch the given url can follow, keeping the entry with the highest precedence
+         */
+        Entry match(RouteUrl url, int depth, Entry best, ResolutionTrace trace) {
+            if (trace != null) {
+                trace.candidatesExamined++;
+            }
+            if (depth == url.getSegmentCount()) {
+                if (entry != null && entry.precedes(best)) {
+                    return entry;
+                }
+                return best;
+            }
+
+            if (literals != null) {
+                Node child = literals.get(url, depth);
+                if (child != null) {
+                    best = child.match(url, depth + 1, best, trace);
+                }
+            }
+            if (intChild != null && CompiledRoute.accepts(CompiledRoute.SEGMENT_INT, null, url, depth)) {
+                best = intChild.match(url, depth + 1, best, trace);
+            }
+            if (stringChild != null && CompiledRoute.accepts(CompiledRoute.SEGMENT_STRING, null, url, depth)) {
+                best = stringChild.match(url, depth + 1, best, trace);
+            }
+
+            return best;
+        }
+    }
+
+    /**
+     * Open addressing hash table of literal segments that can be queried with a path segment
+     * of a {@link RouteUrl} without extracting it as a string.
+     * Like nodes, a table is only modified by the {@link Builder} owning it.
+     */
+    private static final class LiteralTable {
+        static final LiteralTable EMPTY = new LiteralTable(null, new String[4], new Node[4], 0);
+
+        private final Object owner;
+        private String[] keys;
+        private Node[] values;
+        private int size;
+
+        private LiteralTable(Object owner, String[] keys, Node[] values, int size) {
+            this.owner = owner;
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        /**
+         * @return This table if it is owned by the given owner, an owned copy of it otherwise
+         */
+        LiteralTable editable(Object owner) {
+            if (this.owner == owner) {
+                return this;
+            }
+            return new LiteralTable(owner, keys.clone(), values.clone(), size);
+        }
+
+        Node get(String key) {
+            int mask = keys.length - 1;
+            for (int i = key.hashCode() & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        Node get(RouteUrl url, int index) {
+            int mask = keys.length - 1;
+            for (int i = url.segmentHashCode(index) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (url.segmentEquals(index, keys[i])) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        void put(String key, Node value) {
+            int mask = keys.length - 1;
+            int i = key.hashCode() & mask;
+            while (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+
+            if ((size + 1) * 2 > keys.length) {
+                String[] oldKeys = keys;
+                Node[] oldValues = values;
+                keys = new String[oldKeys.length * 2];
+                values = new Node[oldValues.length * 2];
+                size = 0;
+
+                for (int j = 0; j < oldKeys.length; j++) {
+                    if (oldKeys[j] != null) {
+                        put(oldKeys[j], oldValues[j]);
+                    }
+                }
+                put(key, value);
+                return;
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * The kind of routable a route is mapped to.<br/>
+ * The declaration order is also the resolution precedence: when a given route matches
+ * more than one mapped route, activity routes win over fragment routes which win over action routes.
+ *
+ * @author S1ri0S
+ */
+public enum RouteKind {
+    ACTIVITY,
+    FRAGMENT,
+    ACTION
+}
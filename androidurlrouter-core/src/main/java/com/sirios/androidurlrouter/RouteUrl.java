@@ -0,0 +1,363 @@
+package com.sirios.androidurlrouter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Lightweight tokenizer for the routes given to the router.<br/>
+ * The scheme, host, path segments and query of the url are kept as offsets into the original
+ * string, so matching a url against the compiled routes does not allocate. Only path segments
+ * containing escaped characters are decoded, and only when they are first read.<br/>
+ * Follows the parts of <code>android.net.Uri</code>'s behaviour the router relies on: empty path
+ * segments are skipped and path segments are percent decoded.
+ *
+ * @author S1ri0S
+ */
+final class RouteUrl {
+
+    private final String url;
+    private int schemeEnd = -1;
+    private int hostStart = -1;
+    private int hostEnd = -1;
+    private int queryStart = -1;
+    private int queryEnd = -1;
+    /* Start and end offsets of each path segment */
+    private int[] segments;
+    private int segmentCount;
+    /* Bit i is set if segment i contains escaped characters, for the first 64 segments */
+    private long escapedSegments;
+    private String[] decodedSegments;
+    /* Whether a trailing slug was stripped, in which case it is still readable at index segmentCount */
+    private boolean slugStripped;
+
+    private RouteUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Tokenize a url
+     *
+     * @param url       The url
+     * @param stripSlug Whether to ignore the last path segment if it is a slug
+     *                  (see {@link SegmentMatchers#isSlug(CharSequence, int, int)})
+     * @return The tokenized url
+     */
+    static RouteUrl parse(String url, boolean stripSlug) {
+        RouteUrl routeUrl = new RouteUrl(url);
+        int length = url.length();
+        int fragmentStart = url.indexOf('#');
+        int end = fragmentStart == -1 ? length : fragmentStart;
+        int pathStart = 0;
+
+        for (int i = 0; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                routeUrl.schemeEnd = i;
+                pathStart = i + 1;
+                break;
+            } else if (c == '/' || c == '?') {
+                break;
+            }
+        }
+
+        int question = url.indexOf('?', pathStart);
+        if (question != -1 && question < end) {
+            routeUrl.queryStart = question + 1;
+            routeUrl.queryEnd = end;
+            end = question;
+        }
+
+        if (pathStart + 1 < end && url.charAt(pathStart) == '/' && url.charAt(pathStart + 1) == '/') {
+            int authorityStart = pathStart + 2;
+            int authorityEnd = url.indexOf('/', authorityStart);
+            if (authorityEnd == -1 || authorityEnd > end) {
+                authorityEnd = end;
+            }
+            routeUrl.parseHost(authorityStart, authorityEnd);
+            pathStart = authorityEnd;
+        } else if (routeUrl.schemeEnd != -1 && (pathStart >= end || url.charAt(pathStart) != '/')) {
+            /* Opaque urls (e.g. mailto:someone) have no path segments */
+            pathStart = end;
+        }
+
+        routeUrl.parseSegments(pathStart, end);
+
+        if (stripSlug && routeUrl.segmentCount > 0) {
+            int last = routeUrl.segmentCount - 1;
+            CharSequence lastSegment = routeUrl.segmentSource(last);
+            if (SegmentMatchers.isSlug(lastSegment, routeUrl.segmentStart(last), routeUrl.segmentEnd(last))) {
+                routeUrl.segmentCount--;
+                routeUrl.slugStripped = true;
+            }
+        }
+
+        return routeUrl;
+    }
+
+    private void parseHost(int authorityStart, int authorityEnd) {
+        int start = url.lastIndexOf('@', authorityEnd - 1);
+        start = start < authorityStart ? authorityStart : start + 1;
+
+        int end = authorityEnd;
+        for (int i = authorityEnd - 1; i >= start; i--) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                end = i;
+                break;
+            } else if (c == ']') {
+                /* IPv6 literal without a port */
+                break;
+            }
+        }
+
+        hostStart = start;
+        hostEnd = end;
+    }
+
+    private void parseSegments(int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (url.charAt(i) != '/' && (i == start || url.charAt(i - 1) == '/')) {
+                count++;
+            }
+        }
+
+        segments = new int[count * 2];
+        int segmentStart = -1;
+        for (int i = start; i <= end; i++) {
+            char c = i == end ? '/' : url.charAt(i);
+            if (c == '/') {
+                if (segmentStart != -1) {
+                    segments[segmentCount * 2] = segmentStart;
+                    segments[segmentCount * 2 + 1] = i;
+                    segmentCount++;
+                    segmentStart = -1;
+                }
+            } else {
+                if (segmentStart == -1) {
+                    segmentStart = i;
+                }
+                if (c == '%' && segmentCount < 64) {
+                    escapedSegments |= 1L << segmentCount;
+                }
+            }
+        }
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    boolean hasScheme() {
+        return schemeEnd != -1;
+    }
+
+    /**
+     * @return true if the scheme of this url equals the given one
+     */
+    boolean schemeEquals(String scheme) {
+        if (schemeEnd == -1) {
+            return scheme == null;
+        }
+        return scheme != null && scheme.length() == schemeEnd && url.regionMatches(0, scheme, 0, schemeEnd);
+    }
+
+    String getScheme() {
+        return schemeEnd == -1 ? null : url.substring(0, schemeEnd);
+    }
+
+    /**
+     * @return true if the host of this url equals the given one
+     */
+    boolean hostEquals(String host) {
+        if (hostStart == -1) {
+            return host == null;
+        }
+        int length = hostEnd - hostStart;
+        return host != null && host.length() == length && url.regionMatches(hostStart, host, 0, length);
+    }
+
+    /**
+     * @return true if the host of this url ends with the given suffix and is longer than it
+     */
+    boolean hostHasSuffix(String suffix) {
+        int length = hostEnd - hostStart;
+        return hostStart != -1 && length > suffix.length()
+                && url.regionMatches(hostEnd - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    /**
+     * @return The hash code {@link String#hashCode()} would return for the scheme, 0 if there is none
+     */
+    int schemeHashCode() {
+        return hashCode(0, schemeEnd);
+    }
+
+    /**
+     * @return The hash code {@link String#hashCode()} would return for the host, 0 if there is none
+     */
+    int hostHashCode() {
+        return hostStart == -1 ? 0 : hashCode(hostStart, hostEnd);
+    }
+
+    private int hashCode(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + url.charAt(i);
+        }
+        return hash;
+    }
+
+    String getHost() {
+        return hostStart == -1 ? null : url.substring(hostStart, hostEnd);
+    }
+
+    int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return true if a trailing slug was stripped when parsing, in which case it can still be read
+     * as the path segment at index {@link #getSegmentCount()}
+     */
+    boolean hasStrippedSlug() {
+        return slugStripped;
+    }
+
+    /**
+     * @return The string holding the path segment at the given index, which is the url itself
+     * unless the segment had to be decoded
+     */
+    CharSequence segmentSource(int index) {
+        int start = segments[index * 2];
+        int end = segments[index * 2 + 1];
+
+        if (index < 64 ? (escapedSegments & (1L << index)) == 0 : url.lastIndexOf('%', end - 1) < start) {
+            return url;
+        }
+
+        if (decodedSegments == null) {
+            decodedSegments = new String[segments.length / 2];
+        }
+        if (decodedSegments[index] == null) {
+            decodedSegments[index] = decode(url, start, end, false);
+        }
+        return decodedSegments[index];
+    }
+
+    int segmentStart(int index) {
+        return segmentSource(index) == url ? segments[index * 2] : 0;
+    }
+
+    int segmentEnd(int index) {
+        CharSequence source = segmentSource(index);
+        return source == url ? segments[index * 2 + 1] : source.length();
+    }
+
+    /**
+     * @return The decoded path segment at the given index
+     */
+    String getSegment(int index) {
+        CharSequence source = segmentSource(index);
+        return source == url ? url.substring(segments[index * 2], segments[index * 2 + 1]) : source.toString();
+    }
+
+    /**
+     * @return true if the path segment at the given index equals the given string
+     */
+    boolean segmentEquals(int index, String segment) {
+        CharSequence source = segmentSource(index);
+        int start = segmentStart(index);
+        int length = segmentEnd(index) - start;
+
+        if (segment.length() != length) {
+            return false;
+        }
+        if (source == url) {
+            return url.regionMatches(start, segment, 0, length);
+        }
+        return segment.equals(source);
+    }
+
+    /**
+     * @return The hash code {@link String#hashCode()} would return for the path segment at the given index
+     */
+    int segmentHashCode(int index) {
+        CharSequence source = segmentSource(index);
+        int end = segmentEnd(index);
+        int hash = 0;
+
+        for (int i = segmentStart(index); i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * @return A lazy view of the query parameters of the url
+     * @see QueryParams
+     */
+    QueryParams getQueryParams() {
+        return queryStart == -1 ? QueryParams.EMPTY : new QueryParams(url, queryStart, queryEnd);
+    }
+
+    /**
+     * Percent decode part of a string as UTF-8. Malformed escapes are kept as they are.
+     *
+     * @param plusAsSpace Whether to decode <code>+</code> to a space
+     */
+    static String decode(String s, int start, int end, boolean plusAsSpace) {
+        int i = start;
+        while (i < end && s.charAt(i) != '%' && (!plusAsSpace || s.charAt(i) != '+')) {
+            i++;
+        }
+        if (i == end) {
+            return s.substring(start, end);
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        builder.append(s, start, i);
+        ByteArrayOutputStream bytes = null;
+
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < end && hexValue(s.charAt(i + 1)) != -1 && hexValue(s.charAt(i + 2)) != -1) {
+                if (bytes == null) {
+                    bytes = new ByteArrayOutputStream();
+                }
+                bytes.write((hexValue(s.charAt(i + 1)) << 4) | hexValue(s.charAt(i + 2)));
+                i += 3;
+                continue;
+            }
+
+            flush(builder, bytes);
+            builder.append(plusAsSpace && c == '+' ? ' ' : c);
+            i++;
+        }
+        flush(builder, bytes);
+
+        return builder.toString();
+    }
+
+    private static void flush(StringBuilder builder, ByteArrayOutputStream bytes) {
+        if (bytes != null && bytes.size() > 0) {
+            try {
+                builder.append(bytes.toString("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+            bytes.reset();
+        }
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,138 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * Allocation free checks used to match path segments against wildcards.<br/>
+ * Each check is the hand written equivalent of the regular expression it replaced.
+ *
+ * @author S1ri0S
+ */
+final class SegmentMatchers {
+
+    static final String INT_WILDCARD_PREFIX = "i:{";
+    static final String STRING_WILDCARD_PREFIX = "s:{";
+
+    private SegmentMatchers() {
+    }
+
+    /**
+     * Equivalent of <code>\d+</code>
+     */
+    static boolean isIntValue(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a value accepted by {@link #isIntValue(CharSequence, int, int)}
+     *
+     * @return The value or -1 if it does not fit in a long
+     */
+    static long parseLong(CharSequence s, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Equivalent of <code>[\w+|\.|\-|_]+</code>
+     */
+    static boolean isStringValue(CharSequence s, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!isWordChar(c) && c != '+' && c != '|' && c != '.' && c != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Equivalent of <code>(([a-zA-Z0-9]+\-)+[a-zA-Z0-9]+)</code>, i.e. at least two alphanumeric
+     * runs joined by single hyphens
+     */
+    static boolean isSlug(CharSequence s, int start, int end) {
+        boolean hyphen = false;
+        boolean previousHyphen = true;
+
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '-') {
+                if (previousHyphen) {
+                    return false;
+                }
+                hyphen = true;
+                previousHyphen = true;
+            } else if (isAlphanumeric(c)) {
+                previousHyphen = false;
+            } else {
+                return false;
+            }
+        }
+        return hyphen && !previousHyphen;
+    }
+
+    /**
+     * Equivalent of <code>i:\{(\w+)\}</code> and <code>s:\{(\w+)\}</code>
+     *
+     * @param segment A mapped route segment
+     * @param prefix  Either {@link #INT_WILDCARD_PREFIX} or {@link #STRING_WILDCARD_PREFIX}
+     * @return The wildcard name or null if the segment is not a wildcard of that type
+     */
+    static String wildcardName(String segment, String prefix) {
+        int end = segment.length() - 1;
+        if (end <= prefix.length() || !segment.startsWith(prefix) || segment.charAt(end) != '}') {
+            return null;
+        }
+        for (int i = prefix.length(); i < end; i++) {
+            if (!isWordChar(segment.charAt(i))) {
+                return null;
+            }
+        }
+        return segment.substring(prefix.length(), end);
+    }
+
+    /**
+     * Equivalent of <code>\{(\w+)\?\}</code>
+     *
+     * @param s     A mapped route
+     * @param start The start of its last path segment
+     * @param end   The end of its last path segment
+     * @return The name of the optional trailing wildcard or null if the segment is not one
+     */
+    static String optionalWildcardName(String s, int start, int end) {
+        if (end - start < 4 || s.charAt(start) != '{' || s.charAt(end - 2) != '?' || s.charAt(end - 1) != '}') {
+            return null;
+        }
+        for (int i = start + 1; i < end - 2; i++) {
+            if (!isWordChar(s.charAt(i))) {
+                return null;
+            }
+        }
+        return s.substring(start + 1, end - 2);
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWordChar(char c) {
+        return isAlphanumeric(c) || c == '_';
+    }
+}
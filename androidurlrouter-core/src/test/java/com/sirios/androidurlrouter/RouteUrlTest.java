@@ -0,0 +1,76 @@
+package com.sirios.androidurlrouter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteUrlTest {
+
+    @Test
+    public void testParts() throws Exception {
+        RouteUrl url = RouteUrl.parse("app://user@www.app.com:8080//laws//1981/?order=desc#top", false);
+
+        assertEquals("app", url.getScheme());
+        assertEquals("www.app.com", url.getHost());
+        assertTrue(url.schemeEquals("app"));
+        assertTrue(url.hostEquals("www.app.com"));
+        assertFalse(url.hostEquals("www.app.co"));
+        assertEquals(2, url.getSegmentCount());
+        assertEquals("laws", url.getSegment(0));
+        assertEquals("1981", url.getSegment(1));
+        assertEquals("1981".hashCode(), url.segmentHashCode(1));
+        assertEquals("desc", url.getQueryParams().get("order"));
+    }
+
+    @Test
+    public void testNoPathOrHost() throws Exception {
+        RouteUrl url = RouteUrl.parse("app://www.app.com?page=1", true);
+        assertEquals(0, url.getSegmentCount());
+        assertEquals("1", url.getQueryParams().get("page"));
+
+        url = RouteUrl.parse("app:/laws/1981", true);
+        assertNull(url.getHost());
+        assertTrue(url.hostEquals(null));
+        assertEquals(2, url.getSegmentCount());
+    }
+
+    @Test
+    public void testSlugStripping() throws Exception {
+        assertEquals(4, RouteUrl.parse("app://www.app.com/laws/1981/articles/14563/lala-lala-la", true).getSegmentCount());
+        assertEquals(5, RouteUrl.parse("app://www.app.com/laws/1981/articles/14563/lala-lala-la", false).getSegmentCount());
+        assertEquals(2, RouteUrl.parse("app://www.app.com/pdfViewer/lakis-4236-lalakis.pdf", true).getSegmentCount());
+    }
+
+    @Test
+    public void testDecoding() throws Exception {
+        RouteUrl url = RouteUrl.parse("app://www.app.com/a%20b/c%2Fd/%E2%82%AC?url=http%3A%2F%2Fwww.app.com&q=a+b&q=c&flag", false);
+
+        assertEquals("a b", url.getSegment(0));
+        assertTrue(url.segmentEquals(1, "c/d"));
+        assertEquals("\u20ac", url.getSegment(2));
+
+        Map<String, String> params = url.getQueryParams();
+        assertEquals("http://www.app.com", params.get("url"));
+        assertEquals("a b", params.get("q"));
+        assertEquals("", params.get("flag"));
+        assertEquals(3, params.size());
+    }
+
+    @Test
+    public void testMultiValuedQueryParams() throws Exception {
+        QueryParams params = RouteUrl.parse("app://www.app.com/a?tag=x&utm_source=mail&tag=y+z&&tag", false).getQueryParams();
+
+        assertEquals(Arrays.asList("x", "y z", ""), params.getAll("tag"));
+        assertEquals(Collections.singletonList("mail"), params.getAll("utm_source"));
+        assertTrue(params.getAll("missing").isEmpty());
+        assertEquals("x", params.get("tag"));
+        assertTrue(RouteUrl.parse("app://www.app.com/a?", false).getQueryParams().isEmpty());
+    }
+}
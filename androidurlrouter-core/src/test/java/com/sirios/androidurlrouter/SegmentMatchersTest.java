@@ -0,0 +1,33 @@
+package com.sirios.androidurlrouter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SegmentMatchersTest {
+
+    private static final String[] SEGMENTS = {
+            "", "1", "0042", "12a", "-1", "abc", "a_b", "a+b|c", "a.b-c", "lakis-4236-lalakis.pdf",
+            "lala-lala-la", "lala--la", "-lala", "lala-", "a b", "\u03ba\u03b5\u03af\u03bc\u03b5\u03bd\u03bf", "a/b", "a%20b", "\u0663"
+    };
+
+    @Test
+    public void testMatchersAgreeWithRegexes() throws Exception {
+        for (String s : SEGMENTS) {
+            assertEquals(s, s.matches("\\d+"), SegmentMatchers.isIntValue(s, 0, s.length()));
+            assertEquals(s, s.matches("[\\w+|\\.|\\-|_]+"), SegmentMatchers.isStringValue(s, 0, s.length()));
+            assertEquals(s, s.matches("(([a-zA-Z0-9]+\\-)+[a-zA-Z0-9]+)"), SegmentMatchers.isSlug(s, 0, s.length()));
+        }
+    }
+
+    @Test
+    public void testWildcardName() throws Exception {
+        assertEquals("lawId", SegmentMatchers.wildcardName("i:{lawId}", SegmentMatchers.INT_WILDCARD_PREFIX));
+        assertEquals("note_2", SegmentMatchers.wildcardName("s:{note_2}", SegmentMatchers.STRING_WILDCARD_PREFIX));
+        assertNull(SegmentMatchers.wildcardName("i:{lawId}", SegmentMatchers.STRING_WILDCARD_PREFIX));
+        assertNull(SegmentMatchers.wildcardName("i:{}", SegmentMatchers.INT_WILDCARD_PREFIX));
+        assertNull(SegmentMatchers.wildcardName("i:{law-id}", SegmentMatchers.INT_WILDCARD_PREFIX));
+        assertNull(SegmentMatchers.wildcardName("i:{lawId", SegmentMatchers.INT_WILDCARD_PREFIX));
+    }
+}
@@ -0,0 +1,194 @@
+package com.sirios.androidurlrouter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Resolves routes of a {@link Router} on a background executor and prepares them for execution:
+ * the routable class is loaded and initialized and the query parameters are decoded, so that
+ * none of this work is left for the main thread.
+ *
+ * @author S1ri0S
+ */
+final class BackgroundResolver {
+
+    private final Router router;
+    /* The resolver of the router a scope was created from, whose executors the scope uses unless given its own */
+    private final BackgroundResolver parent;
+    private volatile Executor backgroundExecutor;
+    private volatile Executor callbackExecutor;
+
+    BackgroundResolver(Router router) {
+        this(router, null);
+    }
+
+    BackgroundResolver(Router router, BackgroundResolver parent) {
+        this.router = router;
+        this.parent = parent;
+    }
+
+    void setBackgroundExecutor(Executor executor) {
+        backgroundExecutor = executor;
+    }
+
+    void setCallbackExecutor(Executor executor) {
+        callbackExecutor = executor;
+    }
+
+    void resolveAsync(final String givenRoute, final Router.ResolveCallback callback) {
+        backgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final Route route = prepareOrNull(givenRoute);
+
+                callbackExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onRouteResolved(givenRoute, route);
+                    }
+                });
+            }
+        });
+    }
+
+    void prefetch(Collection<String> givenRoutes) {
+        final List<String> routes = new ArrayList<>(givenRoutes);
+
+        backgroundExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String route : routes) {
+                    prepareOrNull(route);
+                }
+            }
+        });
+    }
+
+    /**
+     * Prefetch the given routes once the message queue of the calling thread is idle
+     */
+    void prefetchWhenIdle(final Collection<String> givenRoutes) {
+        final List<String> routes = new ArrayList<>(givenRoutes);
+
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                prefetch(routes);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Prepare a route, logging any failure instead of letting it end the background task
+     *
+     * @return The resolved route or null if it is not mapped or could not be resolved
+     */
+    private Route prepareOrNull(String givenRoute) {
+        try {
+            return prepare(givenRoute);
+        } catch (RuntimeException e) {
+            RouterLogger logger = router.getLogger();
+            if (logger.isLoggable(Log.ERROR)) {
+                logger.log(Log.ERROR, "Could not resolve " + givenRoute + ": " + e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Resolve a route and load everything its execution will need
+     *
+     * @return The resolved route or null if it is not mapped
+     */
+    private Route prepare(String givenRoute) {
+        Route route = router.resolveRoute(givenRoute);
+        if (route == null) {
+            return null;
+        }
+
+        Object result = route.getResult();
+        Class<?> clazz = result instanceof Class ? (Class<?>) result : result.getClass();
+        try {
+            Class.forName(clazz.getName(), true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            /* Cannot happen for a class that is already loaded */
+        }
+
+        if (route.getQueryParams() != null) {
+            route.getQueryParams().size();
+        }
+        route.getWildcards();
+
+        return route;
+    }
+
+    private Executor backgroundExecutor() {
+        Executor executor = backgroundExecutor;
+        if (executor == null && parent != null) {
+            return parent.backgroundExecutor();
+        }
+        if (executor == null) {
+            synchronized (this) {
+                if (backgroundExecutor == null) {
+                    backgroundExecutor = newBackgroundExecutor();
+                }
+                executor = backgroundExecutor;
+            }
+        }
+        return executor;
+    }
+
+    private Executor callbackExecutor() {
+        Executor executor = callbackExecutor;
+        if (executor == null && parent != null) {
+            return parent.callbackExecutor();
+        }
+        if (executor == null) {
+            synchronized (this) {
+                if (callbackExecutor == null) {
+                    callbackExecutor = new MainThreadExecutor();
+                }
+                executor = callbackExecutor;
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService newBackgroundExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "Router-background");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            handler.post(runnable);
+        }
+    }
+}
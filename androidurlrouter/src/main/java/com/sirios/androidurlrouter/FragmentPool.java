@@ -0,0 +1,175 @@
+package com.sirios.androidurlrouter;
+
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.app.FragmentTransaction;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the fragments of reusable fragment routes alive between navigations.<br/>
+ * A fragment of a reusable route is tagged after its mapped route and wildcard values, e.g.
+ * <code>app://www.app.com/laws/i:{lawId}#lawId=1</code>, so replacing the container's fragment with the same url
+ * again finds it in the fragment manager and reuses it, re-delivering the arguments of the new navigation. When
+ * replaced, such fragments are detached rather than removed, and the least recently detached ones are removed once the pool is full.<br/>
+ * Fragments popped off the back stack are not tracked; the pool only removes fragments that are still detached.
+ * The pool is used on the main thread only.
+ *
+ * @author S1ri0S
+ * @see Router#setFragmentReuse(String, boolean)
+ */
+public final class FragmentPool {
+
+    static final int DEFAULT_MAX_SIZE = 3;
+
+    private final Set<String> reusableRoutes = new LinkedHashSet<>();
+    /* Tags of the detached fragments, least recently detached first */
+    private final Set<String> detachedTags = new LinkedHashSet<>();
+    private int maxSize;
+    private long reuseCount;
+    private long instantiationCount;
+    private long evictionCount;
+
+    FragmentPool(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The pool size must not be negative");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized void setReusable(String mappedRoute, boolean reusable) {
+        if (reusable) {
+            reusableRoutes.add(mappedRoute);
+        } else {
+            reusableRoutes.remove(mappedRoute);
+        }
+    }
+
+    synchronized boolean isReusable(String mappedRoute) {
+        return reusableRoutes.contains(mappedRoute);
+    }
+
+    /**
+     * @return The stable tag of the fragment of a resolved route
+     */
+    static String tagOf(Route resolvedRoute) {
+        StringBuilder tag = new StringBuilder(resolvedRoute.getMappedRoute()).append('#');
+        RouteArguments arguments = resolvedRoute.getArguments();
+
+        if (arguments != null) {
+            for (int i = 0; i < arguments.size(); i++) {
+                tag.append(i > 0 ? "&" : "").append(arguments.getName(i)).append('=')
+                        .append(arguments.getType(i) == RouteArguments.TYPE_STRING
+                                ? arguments.getString(i) : String.valueOf(arguments.getLong(i)));
+            }
+        } else if (resolvedRoute.getWildcards() != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Comparable> wildcards = new TreeMap<String, Comparable>(resolvedRoute.getWildcards());
+            boolean first = true;
+            for (Map.Entry<String, Comparable> entry : wildcards.entrySet()) {
+                tag.append(first ? "" : "&").append(entry.getKey()).append('=').append(entry.getValue());
+                first = false;
+            }
+        }
+        return tag.toString();
+    }
+
+    /**
+     * @param tag The tag of a fragment
+     * @return true if the tag is the stable tag of a reusable route
+     */
+    synchronized boolean isReusableTag(String tag) {
+        if (tag == null) {
+            return false;
+        }
+        for (String mappedRoute : reusableRoutes) {
+            if (tag.length() > mappedRoute.length() && tag.charAt(mappedRoute.length()) == '#'
+                    && tag.startsWith(mappedRoute)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the fragment of a reusable route
+     *
+     * @return The fragment or null if the fragment manager does not hold it anymore
+     */
+    synchronized Fragment acquire(FragmentManager fragmentManager, String tag) {
+        detachedTags.remove(tag);
+
+        Fragment fragment = fragmentManager.findFragmentByTag(tag);
+        if (fragment == null || fragment.getArguments() == null || fragment.isRemoving()) {
+            instantiationCount++;
+            return null;
+        }
+
+        reuseCount++;
+        return fragment;
+    }
+
+    /**
+     * Detach a replaced fragment of a reusable route, removing the least recently detached ones beyond the pool size
+     */
+    synchronized void release(FragmentManager fragmentManager, FragmentTransaction transaction, Fragment fragment) {
+        transaction.detach(fragment);
+        detachedTags.remove(fragment.getTag());
+        detachedTags.add(fragment.getTag());
+
+        Iterator<String> eldest = detachedTags.iterator();
+        while (detachedTags.size() > maxSize) {
+            Fragment evicted = fragmentManager.findFragmentByTag(eldest.next());
+            eldest.remove();
+
+            if (evicted != null && (evicted == fragment || evicted.isDetached())) {
+                transaction.remove(evicted);
+            }
+            evictionCount++;
+        }
+    }
+
+    synchronized void clear() {
+        detachedTags.clear();
+    }
+
+    /**
+     * @return The number of detached fragments kept
+     */
+    public synchronized int size() {
+        return detachedTags.size();
+    }
+
+    /**
+     * @return The number of navigations to reusable routes served by an existing fragment
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return The number of navigations to reusable routes that had to instantiate their fragment
+     */
+    public synchronized long getInstantiationCount() {
+        return instantiationCount;
+    }
+
+    /**
+     * @return The number of detached fragments removed to keep the pool within its size
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
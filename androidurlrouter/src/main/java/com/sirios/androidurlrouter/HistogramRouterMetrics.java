@@ -0,0 +1,146 @@
+package com.sirios.androidurlrouter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link RouterMetrics}, keeping lock-free latency histograms and counters per mapped route.<br/>
+ * Given routes that are not mapped are accounted for under {@link #UNMATCHED}.
+ * Statistics can be read at any time, e.g. to dump them to telemetry:
+ *
+ * <pre>
+ * HistogramRouterMetrics metrics = new HistogramRouterMetrics();
+ * Router.getInstance().setMetrics(metrics);
+ * ...
+ * for (Map.Entry&lt;String, HistogramRouterMetrics.RouteStats&gt; entry : metrics.getRouteStats().entrySet()) {
+ *     telemetry.report(entry.getKey(), entry.getValue().getResolution().getP99());
+ * }
+ * </pre>
+ *
+ * @author S1ri0S
+ */
+public class HistogramRouterMetrics implements RouterMetrics {
+
+    public static final String UNMATCHED = "<unmatched>";
+
+    private final ConcurrentMap<String, RouteStats> routeStats = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRouteResolved(String givenRoute, String mappedRoute, RouteKind kind,
+                                long durationNanos, int candidatesExamined, boolean cacheHit) {
+        RouteStats stats = stats(mappedRoute, kind);
+        stats.resolution.record(durationNanos);
+        stats.candidatesExamined.addAndGet(candidatesExamined);
+        (cacheHit ? stats.cacheHits : stats.cacheMisses).incrementAndGet();
+    }
+
+    @Override
+    public void onListenersNotified(String givenRoute, String mappedRoute, long durationNanos) {
+        stats(mappedRoute, null).listeners.record(durationNanos);
+    }
+
+    @Override
+    public void onRouteExecuted(String givenRoute, String mappedRoute, RouteKind kind, long durationNanos) {
+        stats(mappedRoute, kind).execution.record(durationNanos);
+    }
+
+    private RouteStats stats(String mappedRoute, RouteKind kind) {
+        String key = mappedRoute != null ? mappedRoute : UNMATCHED;
+        RouteStats stats = routeStats.get(key);
+
+        if (stats == null) {
+            RouteStats newStats = new RouteStats(kind);
+            stats = routeStats.putIfAbsent(key, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return The statistics of each mapped route that was resolved at least once, keyed by mapped route
+     */
+    public Map<String, RouteStats> getRouteStats() {
+        return Collections.unmodifiableMap(routeStats);
+    }
+
+    /**
+     * @return The statistics of the given mapped route (or {@link #UNMATCHED}), or null if it was never resolved
+     */
+    public RouteStats getRouteStats(String mappedRoute) {
+        return routeStats.get(mappedRoute);
+    }
+
+    /**
+     * Drop all statistics
+     */
+    public void reset() {
+        routeStats.clear();
+    }
+
+    /**
+     * Statistics of a single mapped route
+     */
+    public static final class RouteStats {
+        private final RouteKind kind;
+        private final LatencyHistogram resolution = new LatencyHistogram();
+        private final LatencyHistogram listeners = new LatencyHistogram();
+        private final LatencyHistogram execution = new LatencyHistogram();
+        private final AtomicLong candidatesExamined = new AtomicLong();
+        private final AtomicLong cacheHits = new AtomicLong();
+        private final AtomicLong cacheMisses = new AtomicLong();
+
+        RouteStats(RouteKind kind) {
+            this.kind = kind;
+        }
+
+        /**
+         * @return The kind of the mapped route, or null for unmatched routes
+         */
+        public RouteKind getKind() {
+            return kind;
+        }
+
+        public LatencyHistogram getResolution() {
+            return resolution;
+        }
+
+        public LatencyHistogram getListeners() {
+            return listeners;
+        }
+
+        /**
+         * @return The time spent running actions, committing fragment transactions or starting activities
+         */
+        public LatencyHistogram getExecution() {
+            return execution;
+        }
+
+        public long getCandidatesExamined() {
+            return candidatesExamined.get();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.get();
+        }
+
+        public long getCacheMisses() {
+            return cacheMisses.get();
+        }
+
+        @Override
+        public String toString() {
+            return "kind=" + kind
+                    + " resolution[" + resolution + "]"
+                    + " listeners[" + listeners + "]"
+                    + " execution[" + execution + "]"
+                    + " candidatesExamined=" + getCandidatesExamined()
+                    + " cacheHits=" + getCacheHits()
+                    + " cacheMisses=" + getCacheMisses();
+        }
+    }
+}
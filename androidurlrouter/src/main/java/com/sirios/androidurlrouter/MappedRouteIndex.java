@@ -0,0 +1,313 @@
+package com.sirios.androidurlrouter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Route index read directly from a {@link RouteSnapshot}.<br/>
+ * Matching walks the trie nodes of the snapshot in place, with the same precedence rules as {@link RouteIndex}.
+ * Only the roots and the kinds of the mapped routes are read when loading; each mapped route is read, and its
+ * routable class loaded, the first time it matches. Action routes resolve to the action instances registered
+ * with the routes the snapshot is loaded for, since the snapshot only holds their class names.
+ * The buffer is only read with absolute gets, so the index can be read from any thread.
+ *
+ * @author S1ri0S
+ */
+final class MappedRouteIndex {
+
+    /* Entry layout: kind, order, route, scheme, host and target strings, segment count, then type and string of each segment */
+    static final int ENTRY_KIND = 0;
+    static final int ENTRY_ORDER = 4;
+    static final int ENTRY_ROUTE = 8;
+    static final int ENTRY_SCHEME = 12;
+    static final int ENTRY_HOST = 16;
+    static final int ENTRY_TARGET = 20;
+    static final int ENTRY_SEGMENT_COUNT = 24;
+    static final int ENTRY_SEGMENTS = 28;
+
+    /* Node layout: entry, int child, string child, literal count, then hash, string and child of each literal */
+    private static final int NODE_ENTRY = 0;
+    private static final int NODE_INT_CHILD = 4;
+    private static final int NODE_STRING_CHILD = 8;
+    private static final int NODE_LITERAL_COUNT = 12;
+    private static final int NODE_LITERALS = 16;
+
+    private final ByteBuffer buffer;
+    private final int stringsOffset;
+    private final int entriesOffset;
+    private final int size;
+    private final AtomicReferenceArray<RouteIndex.Entry> entries;
+    /* The registered action of each action route */
+    private final Map<String, RouterAction> actions;
+
+    private final String[] rootSchemes;
+    private final String[] rootHosts;
+    private final int[] rootNodes;
+    /* Open addressing table of the roots of exact hosts, holding root index + 1 */
+    private final int[] hostTable;
+    /* Indexes of the roots of wildcard hosts, longest suffix first */
+    private final int[] wildcardRoots;
+    private final String[] rootSuffixes;
+
+    /**
+     * @param actions The registered action of each action route of the snapshot, by mapped route
+     * @throws IndexOutOfBoundsException If the snapshot is truncated
+     * @throws IllegalArgumentException  If the action of an action route is not given
+     */
+    MappedRouteIndex(ByteBuffer buffer, Map<String, RouterAction> actions) {
+        this.buffer = buffer;
+        this.actions = actions;
+        this.stringsOffset = buffer.getInt(RouteSnapshot.STRINGS_OFFSET);
+        this.entriesOffset = buffer.getInt(RouteSnapshot.ENTRIES_OFFSET);
+        this.size = buffer.getInt(entriesOffset);
+        this.entries = new AtomicReferenceArray<>(size);
+
+        int rootsOffset = buffer.getInt(RouteSnapshot.ROOTS_OFFSET);
+        int rootCount = buffer.getInt(rootsOffset);
+        rootSchemes = new String[rootCount];
+        rootHosts = new String[rootCount];
+        rootSuffixes = new String[rootCount];
+        rootNodes = new int[rootCount];
+
+        int capacity = 2;
+        while (capacity < rootCount * 2) {
+            capacity <<= 1;
+        }
+        hostTable = new int[capacity];
+        final List<Integer> wildcards = new ArrayList<>();
+
+        for (int i = 0; i < rootCount; i++) {
+            int root = rootsOffset + 4 + 12 * i;
+            rootSchemes[i] = string(buffer.getInt(root));
+            rootHosts[i] = string(buffer.getInt(root + 4));
+            rootNodes[i] = buffer.getInt(root + 8);
+            rootSuffixes[i] = CompiledRoute.hostSuffix(rootHosts[i]);
+
+            if (rootSuffixes[i] != null) {
+                wildcards.add(i);
+                continue;
+            }
+            int slot = RouteIndex.hostHash(rootSchemes[i] != null ? rootSchemes[i].hashCode() : 0,
+                    rootHosts[i] != null ? rootHosts[i].hashCode() : 0) & (capacity - 1);
+            while (hostTable[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            hostTable[slot] = i + 1;
+        }
+
+        Collections.sort(wildcards, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return rootSuffixes[b].length() - rootSuffixes[a].length();
+            }
+        });
+        wildcardRoots = new int[wildcards.size()];
+        for (int i = 0; i < wildcardRoots.length; i++) {
+            wildcardRoots[i] = wildcards.get(i);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int offset = entryOffset(i);
+            if (buffer.getInt(offset + ENTRY_KIND) == RouteKind.ACTION.ordinal()) {
+                String route = string(buffer.getInt(offset + ENTRY_ROUTE));
+                if (!actions.containsKey(route)) {
+                    throw new IllegalArgumentException("The action of the route " + route + " is not registered");
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @see RouteIndex#match(RouteUrl, ResolutionTrace)
+     */
+    RouteIndex.Entry match(RouteUrl url, ResolutionTrace trace) {
+        int best = -1;
+
+        int mask = hostTable.length - 1;
+        for (int i = RouteIndex.hostHash(url.schemeHashCode(), url.hostHashCode()) & mask; hostTable[i] != 0; i = (i + 1) & mask) {
+            int root = hostTable[i] - 1;
+            if (url.schemeEquals(rootSchemes[root]) && url.hostEquals(rootHosts[root])) {
+                best = matchNode(rootNodes[root], url, 0, -1, trace);
+                break;
+            }
+        }
+
+        for (int i = 0; best == -1 && i < wildcardRoots.length; i++) {
+            int root = wildcardRoots[i];
+            if (url.hostHasSuffix(rootSuffixes[root]) && url.schemeEquals(rootSchemes[root])) {
+                best = matchNode(rootNodes[root], url, 0, -1, trace);
+            }
+        }
+
+        return best != -1 ? entry(best) : null;
+    }
+
+    /**
+     * Walk every branch the given url can follow, keeping the entry with the highest precedence
+     */
+    private int matchNode(int node, RouteUrl url, int depth, int best, ResolutionTrace trace) {
+        if (trace != null) {
+            trace.candidatesExamined++;
+        }
+        if (depth == url.getSegmentCount()) {
+            int entry = buffer.getInt(node + NODE_ENTRY);
+            return entry != -1 && precedes(entry, best) ? entry : best;
+        }
+
+        int literalCount = buffer.getInt(node + NODE_LITERAL_COUNT);
+        if (literalCount > 0) {
+            int child = literalChild(node, literalCount, url, depth);
+            if (child != -1) {
+                best = matchNode(child, url, depth + 1, best, trace);
+            }
+        }
+        int intChild = buffer.getInt(node + NODE_INT_CHILD);
+        if (intChild != -1 && CompiledRoute.accepts(CompiledRoute.SEGMENT_INT, null, url, depth)) {
+            best = matchNode(intChild, url, depth + 1, best, trace);
+        }
+        int stringChild = buffer.getInt(node + NODE_STRING_CHILD);
+        if (stringChild != -1 && CompiledRoute.accepts(CompiledRoute.SEGMENT_STRING, null, url, depth)) {
+            best = matchNode(stringChild, url, depth + 1, best, trace);
+        }
+
+        return best;
+    }
+
+    /**
+     * Binary search the literals of a node, sorted by hash, for a path segment of the url
+     *
+     * @return The offset of the child or -1 if no literal equals the segment
+     */
+    private int literalChild(int node, int literalCount, RouteUrl url, int depth) {
+        int hash = url.segmentHashCode(depth);
+        int low = 0;
+        int high = literalCount - 1;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(node + NODE_LITERALS + 12 * middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < literalCount; i++) {
+            int literal = node + NODE_LITERALS + 12 * i;
+            if (buffer.getInt(literal) != hash) {
+                break;
+            }
+            if (segmentEquals(buffer.getInt(literal + 4), url, depth)) {
+                return buffer.getInt(literal + 8);
+            }
+        }
+        return -1;
+    }
+
+    private boolean segmentEquals(int string, RouteUrl url, int depth) {
+        int offset = buffer.getInt(stringsOffset + 4 + 4 * string);
+        int length = buffer.getInt(offset);
+        CharSequence source = url.segmentSource(depth);
+        int start = url.segmentStart(depth);
+
+        if (url.segmentEnd(depth) - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(offset + 4 + 2 * i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the first entry should be chosen over the second one when both match
+     * @see RouteIndex.Entry#precedes(RouteIndex.Entry)
+     */
+    private boolean precedes(int entry, int other) {
+        if (other == -1) {
+            return true;
+        }
+        int kind = buffer.getInt(entryOffset(entry) + ENTRY_KIND);
+        int otherKind = buffer.getInt(entryOffset(other) + ENTRY_KIND);
+        if (kind != otherKind) {
+            return kind < otherKind;
+        }
+        return buffer.getInt(entryOffset(entry) + ENTRY_ORDER) < buffer.getInt(entryOffset(other) + ENTRY_ORDER);
+    }
+
+    /**
+     * @return The mapped route at the given index, read and with its routable loaded the first time
+     */
+    RouteIndex.Entry entry(int index) {
+        RouteIndex.Entry entry = entries.get(index);
+        if (entry != null) {
+            return entry;
+        }
+
+        int offset = entryOffset(index);
+        int segmentCount = buffer.getInt(offset + ENTRY_SEGMENT_COUNT);
+        String[] segments = new String[segmentCount];
+        byte[] types = new byte[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            types[i] = (byte) buffer.getInt(offset + ENTRY_SEGMENTS + 8 * i);
+            segments[i] = string(buffer.getInt(offset + ENTRY_SEGMENTS + 8 * i + 4));
+        }
+
+        CompiledRoute route = CompiledRoute.precompiled(string(buffer.getInt(offset + ENTRY_ROUTE)),
+                string(buffer.getInt(offset + ENTRY_SCHEME)), string(buffer.getInt(offset + ENTRY_HOST)), segments, types);
+        RouteKind kind = RouteKind.values()[buffer.getInt(offset + ENTRY_KIND)];
+        Object target = kind == RouteKind.ACTION ? actions.get(route.getRoute())
+                : loadClass(string(buffer.getInt(offset + ENTRY_TARGET)));
+
+        entries.compareAndSet(index, null, new RouteIndex.Entry(route, kind, target, buffer.getInt(offset + ENTRY_ORDER), null));
+        return entries.get(index);
+    }
+
+    /**
+     * @return A regular index holding every mapped route of the snapshot
+     */
+    RouteIndex materialize() {
+        RouteIndex.Builder builder = RouteIndex.EMPTY.newBuilder();
+        for (int i = 0; i < size; i++) {
+            RouteIndex.Entry entry = entry(i);
+            builder.add(entry.route, entry.kind, entry.target);
+        }
+        return builder.build();
+    }
+
+    private int entryOffset(int index) {
+        return buffer.getInt(entriesOffset + 4 + 4 * index);
+    }
+
+    private String string(int index) {
+        if (index == -1) {
+            return null;
+        }
+
+        int offset = buffer.getInt(stringsOffset + 4 + 4 * index);
+        char[] chars = new char[buffer.getInt(offset)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar(offset + 4 + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    private static Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, false, MappedRouteIndex.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("The route snapshot is stale, " + className + " cannot be loaded", e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * Immutable set of options for executing a route (see {@link Router#navigate(String, android.os.Bundle, NavOptions)}).<br/>
+ * Options are power of two flags that can be combined:
+ *
+ * <pre>
+ * router.navigate(route, NavOptions.of(NavOptions.REPLACE_FRAGMENT | NavOptions.ADD_TO_BACKSTACK));
+ * </pre>
+ *
+ * Every combination of the flags is a shared instance, so passing options never allocates.
+ *
+ * @author S1ri0S
+ */
+public final class NavOptions {
+
+    public static final int ADD_TO_BACKSTACK = 1;
+    public static final int POP_CURRENT_FRAGMENT = 1 << 1;
+    public static final int REPLACE_FRAGMENT = 1 << 2;
+    public static final int START_ACTIVITY_FOR_RESULT = 1 << 3;
+    public static final int OVERRIDE_SAME_ROUTE = 1 << 4;
+    /** Pop back to the route if it is already in the {@link NavigationHistory}, see {@link Router#navigateUpTo(String)} */
+    public static final int POP_TO_EXISTING = 1 << 5;
+
+    private static final int ALL_FLAGS = (POP_TO_EXISTING << 1) - 1;
+    private static final NavOptions[] INSTANCES = new NavOptions[ALL_FLAGS + 1];
+
+    static {
+        for (int flags = 0; flags <= ALL_FLAGS; flags++) {
+            INSTANCES[flags] = new NavOptions(flags);
+        }
+    }
+
+    public static final NavOptions NONE = INSTANCES[0];
+
+    private final int flags;
+
+    private NavOptions(int flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * @param flags A combination of the flags of this class
+     * @return The options
+     */
+    public static NavOptions of(int flags) {
+        if ((flags & ~ALL_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unknown navigation flags " + Integer.toBinaryString(flags & ~ALL_FLAGS)
+                    + ". Router.FLAG_* constants must be passed to the int... execRoute overloads");
+        }
+        return INSTANCES[flags];
+    }
+
+    /**
+     * Translate the flags of the <code>int...</code> {@link Router#execRoute(String, android.os.Bundle, int...)} overloads.
+     * Unknown flags are ignored.
+     *
+     * @param legacyFlags <code>Router.FLAG_*</code> constants, or null for none
+     * @return The equivalent options
+     */
+    static NavOptions fromLegacyFlags(int... legacyFlags) {
+        int flags = 0;
+
+        if (legacyFlags == null) {
+            return NONE;
+        }
+        for (int legacyFlag : legacyFlags) {
+            switch (legacyFlag) {
+                case Router.FLAG_ADD_TO_BACKSTACK:
+                    flags |= ADD_TO_BACKSTACK;
+                    break;
+                case Router.FLAG_POP_CURRENT_FRAGMENT:
+                    flags |= POP_CURRENT_FRAGMENT;
+                    break;
+                case Router.FLAG_REPLACE_FRAGMENT:
+                    flags |= REPLACE_FRAGMENT;
+                    break;
+                case Router.FLAG_START_ACTIVITY_FOR_RESULT:
+                    flags |= START_ACTIVITY_FOR_RESULT;
+                    break;
+                case Router.FLAG_OVERRIDE_SAME_ROUTE:
+                    flags |= OVERRIDE_SAME_ROUTE;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return INSTANCES[flags];
+    }
+
+    /**
+     * @return The options along with the given flags
+     */
+    public NavOptions with(int flags) {
+        return of(this.flags | flags);
+    }
+
+    /**
+     * @return true if all the given flags are set
+     */
+    public boolean has(int flags) {
+        return (this.flags & flags) == flags;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    @Override
+    public String toString() {
+        return "NavOptions{" + Integer.toBinaryString(flags) + "}";
+    }
+}
@@ -0,0 +1,218 @@
+package com.sirios.androidurlrouter;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded stack of the routes navigated to, kept by the {@link Router}.<br/>
+ * Activity and fragment routes are pushed when executed; action routes do not change the screen and are not kept.
+ * Fragments added to the back stack remember the name of their back stack entry, so that popping the fragment
+ * manager's back stack, e.g. with the back button, pops them off the history as well. Back stack entries are only
+ * added once the fragment manager executes their transactions, so routes whose entries are committed but not yet
+ * executed are kept until their entries are seen on the back stack.<br/>
+ * Routes are indexed by their position, so finding where a route is on the stack does not scan it.
+ * Once full, the oldest routes are dropped. The history is thread-safe, so it may be read from any thread.
+ *
+ * @author S1ri0S
+ * @see Router#navigateUpTo(String)
+ */
+public final class NavigationHistory {
+
+    static final int DEFAULT_CAPACITY = 32;
+
+    private final String[] routes;
+    private final RouteKind[] kinds;
+    private final String[] backStackNames;
+    private final Bundle[] arguments;
+    /* Sequence number of the previous occurrence of the same route, or -1 */
+    private final long[] previousOccurrences;
+    /* Sequence number of the topmost occurrence of each route */
+    private final Map<String, Long> topmostOccurrences = new HashMap<>();
+    /* Names of the back stack entries pushed but not yet seen on the fragment manager's back stack */
+    private final Set<String> pendingBackStackNames = new HashSet<>();
+    /* Sequence numbers of the bottom entry and of the entry above the top one */
+    private long bottom;
+    private long top;
+
+    NavigationHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The navigation history capacity must be positive");
+        }
+        routes = new String[capacity];
+        kinds = new RouteKind[capacity];
+        backStackNames = new String[capacity];
+        arguments = new Bundle[capacity];
+        previousOccurrences = new long[capacity];
+    }
+
+    /**
+     * Push a route on top of the history, dropping the oldest route if it is full
+     *
+     * @param backStackName The name of the back stack entry of the route, or null if it cannot be popped back
+     */
+    synchronized void push(String route, RouteKind kind, String backStackName, Bundle args) {
+        if (top - bottom == routes.length) {
+            int slot = slot(bottom);
+            Long topmost = topmostOccurrences.get(routes[slot]);
+            if (topmost != null && topmost == bottom) {
+                topmostOccurrences.remove(routes[slot]);
+            }
+            clear(slot);
+            bottom++;
+        }
+
+        int slot = slot(top);
+        Long previous = topmostOccurrences.put(route, top);
+        routes[slot] = route;
+        kinds[slot] = kind;
+        backStackNames[slot] = backStackName;
+        if (backStackName != null) {
+            pendingBackStackNames.add(backStackName);
+        }
+        arguments[slot] = args;
+        previousOccurrences[slot] = previous != null ? previous : -1;
+        top++;
+    }
+
+    /**
+     * Pop the routes above the given position
+     *
+     * @param size The number of routes to keep
+     * @return true if any route was popped
+     */
+    synchronized boolean truncate(int size) {
+        boolean popped = false;
+
+        while (top - bottom > size) {
+            top--;
+            int slot = slot(top);
+            long previous = previousOccurrences[slot];
+            if (previous >= bottom) {
+                topmostOccurrences.put(routes[slot], previous);
+            } else {
+                topmostOccurrences.remove(routes[slot]);
+            }
+            clear(slot);
+            popped = true;
+        }
+        return popped;
+    }
+
+    /**
+     * Pop the routes whose back stack entries are not on the fragment manager's back stack anymore,
+     * along with every route above them. Entries the fragment manager has not executed yet, e.g. the rest
+     * of a stack of routes while the first entry is reported, are not popped.
+     *
+     * @param names The names of the entries of the fragment manager's back stack
+     * @return true if any route was popped
+     */
+    synchronized boolean retainBackStack(Collection<String> names) {
+        if (!pendingBackStackNames.isEmpty()) {
+            for (String name : names) {
+                pendingBackStackNames.remove(name);
+            }
+        }
+
+        long keep = top;
+        for (long sequence = top - 1; sequence >= bottom; sequence--) {
+            String name = backStackNames[slot(sequence)];
+            if (name != null) {
+                if (names.contains(name) || pendingBackStackNames.contains(name)) {
+                    break;
+                }
+                keep = sequence;
+            }
+        }
+        return truncate((int) (keep - bottom));
+    }
+
+    /**
+     * @return The position of the topmost occurrence of the route, 0 being the bottom of the history,
+     * or -1 if the route is not in the history
+     */
+    public synchronized int indexOf(String route) {
+        Long sequence = topmostOccurrences.get(route);
+        return sequence != null ? (int) (sequence - bottom) : -1;
+    }
+
+    public boolean contains(String route) {
+        return indexOf(route) != -1;
+    }
+
+    public synchronized int size() {
+        return (int) (top - bottom);
+    }
+
+    public int getCapacity() {
+        return routes.length;
+    }
+
+    /**
+     * @return The route at the given position, 0 being the bottom of the history
+     */
+    public synchronized String getRoute(int position) {
+        return routes[slot(checkPosition(position))];
+    }
+
+    synchronized RouteKind getKind(int position) {
+        return kinds[slot(checkPosition(position))];
+    }
+
+    synchronized String getBackStackName(int position) {
+        return backStackNames[slot(checkPosition(position))];
+    }
+
+    synchronized Bundle getArguments(int position) {
+        return arguments[slot(checkPosition(position))];
+    }
+
+    /**
+     * @return The most recent route or null if the history is empty
+     */
+    public synchronized String getTopRoute() {
+        return top > bottom ? routes[slot(top - 1)] : null;
+    }
+
+    /**
+     * @return The routes of the history, bottom first
+     */
+    public synchronized List<String> getRoutes() {
+        List<String> list = new ArrayList<>(size());
+        for (long sequence = bottom; sequence < top; sequence++) {
+            list.add(routes[slot(sequence)]);
+        }
+        return list;
+    }
+
+    synchronized void clear() {
+        truncate(0);
+    }
+
+    private long checkPosition(int position) {
+        if (position < 0 || position >= top - bottom) {
+            throw new IndexOutOfBoundsException("Position " + position + " of a history of " + (top - bottom) + " routes");
+        }
+        return bottom + position;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % routes.length);
+    }
+
+    private void clear(int slot) {
+        if (backStackNames[slot] != null) {
+            pendingBackStackNames.remove(backStackNames[slot]);
+        }
+        routes[slot] = null;
+        kinds[slot] = null;
+        backStackNames[slot] = null;
+        arguments[slot] = null;
+    }
+}
@@ -0,0 +1,132 @@
+package com.sirios.androidurlrouter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size, in-memory log of the most recent navigations, e.g. to attach to crash reports
+ * instead of logging every navigation to logcat.<br/>
+ * Recording a navigation takes no locks; the oldest entries are overwritten once the log is full.
+ *
+ * @author S1ri0S
+ */
+public final class NavigationLog {
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong sequence = new AtomicLong();
+
+    NavigationLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The navigation log capacity must be positive");
+        }
+        entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    void record(String route, String mappedRoute, RouteKind kind, long timestampMillis, long durationNanos) {
+        long number = sequence.getAndIncrement();
+        entries.set((int) (number % entries.length()),
+                new Entry(number, route, mappedRoute, kind, timestampMillis, durationNanos));
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * @return The recorded navigations, oldest first
+     */
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.length());
+        for (int i = 0; i < entries.length(); i++) {
+            Entry entry = entries.get(i);
+            if (entry != null) {
+                list.add(entry);
+            }
+        }
+
+        Collections.sort(list, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+            }
+        });
+        return list;
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    /**
+     * @return The recorded navigations, oldest first, one per line
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (Entry entry : getEntries()) {
+            dump.append(entry).append('\n');
+        }
+        return dump.toString();
+    }
+
+    /**
+     * A single navigation
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final String route;
+        private final String mappedRoute;
+        private final RouteKind kind;
+        private final long timestampMillis;
+        private final long durationNanos;
+
+        Entry(long sequence, String route, String mappedRoute, RouteKind kind, long timestampMillis, long durationNanos) {
+            this.sequence = sequence;
+            this.route = route;
+            this.mappedRoute = mappedRoute;
+            this.kind = kind;
+            this.timestampMillis = timestampMillis;
+            this.durationNanos = durationNanos;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        /**
+         * @return The matched mapped route, or null if the route is not mapped
+         */
+        public String getMappedRoute() {
+            return mappedRoute;
+        }
+
+        /**
+         * @return The kind of the matched route, or null if the route is not mapped
+         */
+        public RouteKind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return When the navigation started, in milliseconds since the epoch
+         */
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return timestampMillis + " " + route + " -> " + (mappedRoute != null ? kind + " " + mappedRoute : "not mapped")
+                    + " (" + durationNanos / 1000 + "us)";
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.sirios.androidurlrouter;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Coalesces navigations requested in quick succession, e.g. by double taps or bursts of push messages.<br/>
+ * The first navigation requested opens a window, either of a fixed duration or up to the next frame.
+ * Navigations requested while the window is open supersede the pending one, and only the last one is
+ * executed when the window closes. Repeats of the pending navigation are counted as coalesced,
+ * navigations to other routes or stacks of routes as dropped.
+ *
+ * @author S1ri0S
+ * @see Router#setNavigationCoalescingWindow(long)
+ */
+public final class NavigationQueue {
+
+    private final Router router;
+    private final long windowMillis;
+    private final Scheduler scheduler;
+
+    private Request pending;
+    /* Identifies the window of the pending navigation, so that a window closed by flush() is not closed twice */
+    private int window;
+    private long coalescedCount;
+    private long droppedCount;
+    private long executedCount;
+
+    NavigationQueue(Router router, long windowMillis) {
+        this(router, windowMillis, new MainThreadScheduler());
+    }
+
+    NavigationQueue(Router router, long windowMillis, Scheduler scheduler) {
+        this.router = router;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return The window in milliseconds, 0 if navigations are coalesced up to the next frame
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    void enqueue(String route, Route resolvedRoute, Bundle args, NavOptions options) {
+        enqueue(Collections.<String>emptyList(), Collections.<Route>emptyList(), route, resolvedRoute, args, options);
+    }
+
+    /**
+     * Enqueue the navigation to a route, after pushing the fragments of a stack of routes
+     *
+     * @see Router#execRoutes(List, Bundle, NavOptions)
+     */
+    void enqueue(List<String> stackRoutes, List<Route> stackResolvedRoutes,
+                 String route, Route resolvedRoute, Bundle args, NavOptions options) {
+        final int openedWindow;
+
+        synchronized (this) {
+            Request request = new Request(stackRoutes, stackResolvedRoutes, route, resolvedRoute, args, options);
+            if (pending != null) {
+                if (pending.route.equals(route) && pending.stackRoutes.equals(stackRoutes)) {
+                    coalescedCount++;
+                } else {
+                    droppedCount++;
+                }
+                pending = request;
+                return;
+            }
+
+            pending = request;
+            openedWindow = ++window;
+        }
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(openedWindow);
+            }
+        }, windowMillis);
+    }
+
+    /**
+     * Execute the pending navigation now, e.g. before the activity saves its state
+     */
+    public void flush() {
+        flush(-1);
+    }
+
+    private void flush(int closingWindow) {
+        Request request;
+
+        synchronized (this) {
+            if (pending == null || (closingWindow != -1 && closingWindow != window)) {
+                return;
+            }
+            request = pending;
+            pending = null;
+            executedCount++;
+        }
+
+        router.navigate(request.stackRoutes, request.stackResolvedRoutes, request.route, request.resolvedRoute,
+                request.args, request.options);
+    }
+
+    /**
+     * Drop the pending navigation, if any
+     */
+    public synchronized void cancel() {
+        if (pending != null) {
+            pending = null;
+            droppedCount++;
+        }
+    }
+
+    public synchronized boolean hasPending() {
+        return pending != null;
+    }
+
+    /**
+     * @return The number of requested navigations that repeated the pending one
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return The number of requested navigations superseded by a navigation to another route, or cancelled
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return The number of navigations executed
+     */
+    public synchronized long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * Runs a task once a window closes
+     */
+    interface Scheduler {
+
+        /**
+         * @param delayMillis The window, 0 to run the task on the next frame
+         */
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    private static final class MainThreadScheduler implements Scheduler {
+        private Handler handler;
+
+        @Override
+        public void schedule(final Runnable task, long delayMillis) {
+            if (delayMillis == 0 && Looper.myLooper() == Looper.getMainLooper()) {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        task.run();
+                    }
+                });
+                return;
+            }
+
+            synchronized (this) {
+                if (handler == null) {
+                    handler = new Handler(Looper.getMainLooper());
+                }
+            }
+            handler.postDelayed(task, delayMillis);
+        }
+    }
+
+    private static final class Request {
+        final List<String> stackRoutes;
+        final List<Route> stackResolvedRoutes;
+        final String route;
+        final Route resolvedRoute;
+        final Bundle args;
+        final NavOptions options;
+
+        Request(List<String> stackRoutes, List<Route> stackResolvedRoutes,
+                String route, Route resolvedRoute, Bundle args, NavOptions options) {
+            this.stackRoutes = stackRoutes;
+            this.stackResolvedRoutes = stackResolvedRoutes;
+            this.route = route;
+            this.resolvedRoute = resolvedRoute;
+            this.args = args;
+            this.options = options;
+        }
+    }
+}
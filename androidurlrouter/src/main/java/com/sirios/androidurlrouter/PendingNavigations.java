@@ -0,0 +1,122 @@
+package com.sirios.androidurlrouter;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Bounded queue of the navigations a {@link Router} could not execute because its host was gone, or had saved
+ * its state and could not commit fragment transactions, replayed in order once a new host attaches or the host resumes.<br/>
+ * Navigating again to a route that is already pending, with the same stack of routes below it, supersedes the
+ * pending navigation in its place, and once the queue is full the oldest navigations are dropped. The queue is thread-safe, so it may be read from any thread.
+ *
+ * @author S1ri0S
+ * @see Router#attach(android.app.Activity, int)
+ */
+public final class PendingNavigations {
+
+    static final int DEFAULT_MAX_SIZE = 8;
+
+    private final LinkedList<Navigation> navigations = new LinkedList<>();
+    private final int maxSize;
+    private long coalescedCount;
+    private long droppedCount;
+
+    PendingNavigations(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The pending navigations size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    synchronized void add(Navigation navigation) {
+        /* A superseded navigation keeps its place, so the pending navigations replay in the order they were requested */
+        ListIterator<Navigation> pending = navigations.listIterator();
+        while (pending.hasNext()) {
+            Navigation previous = pending.next();
+            if (previous.route.equals(navigation.route) && previous.stackRoutes.equals(navigation.stackRoutes)) {
+                pending.set(navigation);
+                coalescedCount++;
+                return;
+            }
+        }
+
+        navigations.addLast(navigation);
+        while (navigations.size() > maxSize) {
+            navigations.removeFirst();
+            droppedCount++;
+        }
+    }
+
+    /**
+     * @return The pending navigations, oldest first, removed from the queue
+     */
+    synchronized List<Navigation> drain() {
+        List<Navigation> drained = new ArrayList<>(navigations);
+        navigations.clear();
+        return drained;
+    }
+
+    synchronized void clear() {
+        navigations.clear();
+    }
+
+    /**
+     * @return The routes of the pending navigations, oldest first
+     */
+    public synchronized List<String> getRoutes() {
+        List<String> routes = new ArrayList<>(navigations.size());
+        for (Navigation navigation : navigations) {
+            routes.add(navigation.route);
+        }
+        return routes;
+    }
+
+    public synchronized int size() {
+        return navigations.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of pending navigations superseded by a navigation to the same route and stack of routes
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return The number of pending navigations dropped because the queue was full
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * A navigation of {@link Router#navigate(String, Bundle, NavOptions)} or
+     * {@link Router#execRoutes(List, Bundle, NavOptions)}, already resolved
+     */
+    static final class Navigation {
+        final List<String> stackRoutes;
+        final List<Route> stackResolvedRoutes;
+        final String route;
+        final Route resolvedRoute;
+        final Bundle args;
+        final NavOptions options;
+
+        Navigation(List<String> stackRoutes, List<Route> stackResolvedRoutes,
+                   String route, Route resolvedRoute, Bundle args, NavOptions options) {
+            this.stackRoutes = stackRoutes;
+            this.stackResolvedRoutes = stackResolvedRoutes;
+            this.route = route;
+            this.resolvedRoute = resolvedRoute;
+            this.args = args;
+            this.options = options;
+        }
+    }
+}
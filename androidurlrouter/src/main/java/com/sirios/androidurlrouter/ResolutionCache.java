@@ -0,0 +1,105 @@
+package com.sirios.androidurlrouter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used cache of route resolutions keyed by the given route.<br/>
+ * Only the immutable outcome of a resolution is cached; the {@link Router} builds a fresh {@link Route}
+ * from it on every hit.<br/>
+ * The cache may be used from any thread. Lookups and insertions hold a lock only for the constant time
+ * update of the access ordered map, evicting the least recently used resolution without scanning.
+ *
+ * @author S1ri0S
+ */
+public final class ResolutionCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<String, Resolution> resolutions;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    ResolutionCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.resolutions = new LinkedHashMap<String, Resolution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Resolution> eldest) {
+                if (size() > ResolutionCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param givenRoute The given route
+     * @param table      The route table the resolution must have been made against
+     * @return The cached resolution or null if there is none for this table
+     */
+    synchronized Resolution get(String givenRoute, RouteTable table) {
+        Resolution resolution = resolutions.get(givenRoute);
+        if (resolution != null && resolution.table == table) {
+            hitCount++;
+            return resolution;
+        }
+
+        missCount++;
+        return null;
+    }
+
+    synchronized void put(String givenRoute, Resolution resolution) {
+        resolutions.put(givenRoute, resolution);
+    }
+
+    /**
+     * Drop every cached resolution, keeping the counters
+     */
+    synchronized void clear() {
+        resolutions.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return resolutions.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * The immutable outcome of resolving a given route against a route table
+     */
+    static final class Resolution {
+        final RouteTable table;
+        final RouteIndex.Entry entry;
+        final RouteArguments arguments;
+        final Map<String, String> queryParams;
+
+        Resolution(RouteTable table, RouteIndex.Entry entry,
+                   RouteArguments arguments, Map<String, String> queryParams) {
+            this.table = table;
+            this.entry = entry;
+            this.arguments = arguments;
+            this.queryParams = queryParams;
+        }
+    }
+}
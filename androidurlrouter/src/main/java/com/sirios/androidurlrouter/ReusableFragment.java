@@ -0,0 +1,20 @@
+package com.sirios.androidurlrouter;
+
+import android.os.Bundle;
+
+/**
+ * May be implemented by the fragments of reusable routes, to be told when they are reused
+ * for another navigation instead of being instantiated again.
+ *
+ * @author S1ri0S
+ * @see Router#setFragmentReuse(String, boolean)
+ */
+public interface ReusableFragment {
+
+    /**
+     * Called before the fragment is attached or shown again
+     *
+     * @param arguments The fragment arguments, already replaced with the ones of the new navigation
+     */
+    void onRouteArgumentsChanged(Bundle arguments);
+}
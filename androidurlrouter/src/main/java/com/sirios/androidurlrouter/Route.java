@@ -1,5 +1,7 @@
 package com.sirios.androidurlrouter;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +16,7 @@ public class Route<T> {
     private String mappedRoute;
     private String cleanRoute; /* Route without query params */
     private Map<String, Comparable> wildcards;
+    private RouteArguments arguments;
     private Map<String, String> queryParams;
 
     public String getMappedRoute() {
@@ -24,18 +27,62 @@ public class Route<T> {
         this.mappedRoute = mappedRoute;
     }
 
+    /**
+     * @return The wildcard values keyed by name: Integers (or Longs for values beyond the int range) and Strings.
+     * Null if the route has no wildcards.
+     */
     public Map<String, Comparable> getWildcards() {
+        if (wildcards == null && arguments != null) {
+            wildcards = arguments.toMap();
+        }
         return wildcards;
     }
 
     public void setWildcards(Map<String, Comparable> wildcards) {
         this.wildcards = wildcards;
+        this.arguments = null;
     }
 
+    /**
+     * @return The typed wildcard values, or null if the wildcards were set with {@link #setWildcards(Map)}
+     */
+    public RouteArguments getArguments() {
+        return arguments;
+    }
+
+    void setArguments(RouteArguments arguments) {
+        this.arguments = arguments;
+        this.wildcards = null;
+    }
+
+    /**
+     * @return The first value of each query parameter. For resolved routes, a read-only view that
+     * is only decoded when first read.
+     */
     public Map<String, String> getQueryParams() {
         return queryParams;
     }
 
+    /**
+     * @param name The name of a query parameter
+     * @return Every value of the query parameter in query order, an empty list if it is absent
+     */
+    public List<String> getQueryParamValues(String name) {
+        if (queryParams instanceof QueryParams) {
+            return ((QueryParams) queryParams).getAll(name);
+        }
+
+        String value = queryParams != null ? queryParams.get(name) : null;
+        return value != null ? Collections.singletonList(value) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @return true if a query parameter is given more than once
+     */
+    boolean hasRepeatedQueryParams() {
+        return queryParams instanceof QueryParams && ((QueryParams) queryParams).hasRepeatedNames();
+    }
+
     public void setQueryParams(Map<String, String> queryParams) {
         this.queryParams = queryParams;
     }
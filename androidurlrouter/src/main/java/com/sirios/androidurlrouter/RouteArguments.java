@@ -0,0 +1,188 @@
+package com.sirios.androidurlrouter;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, typed wildcard values of a resolved route.<br/>
+ * Values are kept in parallel arrays of names, types and long or String values, in path order, so
+ * int wildcards are never boxed. They are written to a {@link Bundle} or {@link Intent} in a single
+ * pass: int wildcards as ints, or as longs if their value does not fit in an int, and string wildcards as strings.
+ *
+ * @author S1ri0S
+ */
+public final class RouteArguments {
+
+    public static final byte TYPE_INT = 0;
+    public static final byte TYPE_LONG = 1;
+    public static final byte TYPE_STRING = 2;
+
+    static final RouteArguments EMPTY = new RouteArguments(new String[0], new byte[0], new long[0], new String[0]);
+
+    private final String[] names;
+    private final byte[] types;
+    private final long[] longValues;
+    private final String[] stringValues;
+
+    private RouteArguments(String[] names, byte[] types, long[] longValues, String[] stringValues) {
+        this.names = names;
+        this.types = types;
+        this.longValues = longValues;
+        this.stringValues = stringValues;
+    }
+
+    /**
+     * Extract the wildcard values of a given url matched by a mapped route
+     *
+     * @param route The matched route
+     * @param url   The given url
+     * @return The values
+     */
+    static RouteArguments extract(CompiledRoute route, RouteUrl url) {
+        String[] names = route.wildcardNames();
+        if (names.length == 0) {
+            return EMPTY;
+        }
+
+        byte[] types = new byte[names.length];
+        long[] longValues = null;
+        String[] stringValues = null;
+
+        for (int i = 0, j = 0; i < route.getSegmentCount(); i++) {
+            switch (route.getSegmentType(i)) {
+                case CompiledRoute.SEGMENT_INT:
+                    if (longValues == null) {
+                        longValues = new long[names.length];
+                    }
+                    long value = SegmentMatchers.parseLong(url.segmentSource(i), url.segmentStart(i), url.segmentEnd(i));
+                    longValues[j] = value;
+                    types[j++] = value <= Integer.MAX_VALUE ? TYPE_INT : TYPE_LONG;
+                    break;
+                case CompiledRoute.SEGMENT_OPTIONAL_STRING:
+                    if (!CompiledRoute.hasValue(url, i)) {
+                        /* Absent optional wildcards are left out, they can only be the last one */
+                        names = Arrays.copyOf(names, j);
+                        types = Arrays.copyOf(types, j);
+                        break;
+                    }
+                    // fall through
+                case CompiledRoute.SEGMENT_STRING:
+                    if (stringValues == null) {
+                        stringValues = new String[names.length];
+                    }
+                    stringValues[j] = url.getSegment(i);
+                    types[j++] = TYPE_STRING;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (names.length == 0) {
+            return EMPTY;
+        }
+        return new RouteArguments(names, types, longValues, stringValues);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return {@link #TYPE_INT}, {@link #TYPE_LONG} or {@link #TYPE_STRING}
+     */
+    public byte getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @return The value of an int or long wildcard
+     */
+    public long getLong(int index) {
+        if (types[index] == TYPE_STRING) {
+            throw new IllegalArgumentException("The wildcard " + names[index] + " is not numeric");
+        }
+        return longValues[index];
+    }
+
+    /**
+     * @return The value of a string wildcard
+     */
+    public String getString(int index) {
+        if (types[index] != TYPE_STRING) {
+            throw new IllegalArgumentException("The wildcard " + names[index] + " is not a string");
+        }
+        return stringValues[index];
+    }
+
+    /**
+     * Put every value into a bundle
+     */
+    public void writeTo(Bundle bundle) {
+        for (int i = 0; i < names.length; i++) {
+            switch (types[i]) {
+                case TYPE_INT:
+                    bundle.putInt(names[i], (int) longValues[i]);
+                    break;
+                case TYPE_LONG:
+                    bundle.putLong(names[i], longValues[i]);
+                    break;
+                default:
+                    bundle.putString(names[i], stringValues[i]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Put every value into the extras of an intent
+     */
+    public void writeTo(Intent intent) {
+        for (int i = 0; i < names.length; i++) {
+            switch (types[i]) {
+                case TYPE_INT:
+                    intent.putExtra(names[i], (int) longValues[i]);
+                    break;
+                case TYPE_LONG:
+                    intent.putExtra(names[i], longValues[i]);
+                    break;
+                default:
+                    intent.putExtra(names[i], stringValues[i]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return The values as Integers, Longs and Strings keyed by name, or null if there are none
+     */
+    Map<String, Comparable> toMap() {
+        if (names.length == 0) {
+            return null;
+        }
+
+        Map<String, Comparable> map = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            switch (types[i]) {
+                case TYPE_INT:
+                    map.put(names[i], (int) longValues[i]);
+                    break;
+                case TYPE_LONG:
+                    map.put(names[i], longValues[i]);
+                    break;
+                default:
+                    map.put(names[i], stringValues[i]);
+                    break;
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * The mapped routes shared by a {@link Router} and its scopes, along with the cache of their resolutions.<br/>
+ * Routes may be registered from any thread. Registration replaces the immutable route table atomically,
+ * so resolving routes takes no locks and every scope sees the same table.
+ *
+ * @author S1ri0S
+ * @see Router#newScope()
+ */
+final class RouteRegistry {
+
+    private final Object registrationLock = new Object();
+    private volatile RouteTable routeTable = RouteTable.EMPTY;
+    private volatile ResolutionCache resolutionCache;
+    private volatile boolean slugStripping;
+
+    RouteTable table() {
+        return routeTable;
+    }
+
+    ResolutionCache cache() {
+        return resolutionCache;
+    }
+
+    void setCache(ResolutionCache cache) {
+        resolutionCache = cache;
+    }
+
+    boolean isSlugStripping() {
+        return slugStripping;
+    }
+
+    void setSlugStripping(boolean stripping) {
+        synchronized (registrationLock) {
+            slugStripping = stripping;
+            /* The given routes resolve differently from now on */
+            invalidateResolutions();
+        }
+    }
+
+    /**
+     * Publish a new route table containing the given route
+     */
+    void add(String route, RouteKind kind, Object target) {
+        synchronized (registrationLock) {
+            routeTable = routeTable.newBuilder().add(route, kind, target).build();
+            invalidateResolutions();
+        }
+    }
+
+    void addAll(RouteTable routes) {
+        synchronized (registrationLock) {
+            /* Tables are immutable, so the first one can be used as it is, e.g. a snapshot is not materialized */
+            routeTable = routeTable.size() == 0 ? routes : routeTable.newBuilder().addAll(routes).build();
+            invalidateResolutions();
+        }
+    }
+
+    void addAll(RouteTable.Builder routes) {
+        synchronized (registrationLock) {
+            routeTable = routeTable.newBuilder().addAll(routes).build();
+            invalidateResolutions();
+        }
+    }
+
+    void clear() {
+        synchronized (registrationLock) {
+            routeTable = RouteTable.EMPTY;
+            slugStripping = false;
+            invalidateResolutions();
+        }
+    }
+
+    private void invalidateResolutions() {
+        ResolutionCache cache = resolutionCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.sirios.androidurlrouter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of a compiled {@link RouteTable}, so that the routes are not compiled again on every start.<br/>
+ * The snapshot holds the route index as it is: interned strings, trie nodes and the mapped routes along with the
+ * names and kinds of their routables. A loaded snapshot is memory mapped and routes are resolved against it
+ * directly; a mapped route is only read, and its routable class loaded, the first time it matches a given route.
+ * Operations needing every route (e.g. {@link Router#getActivityRoutes()} or registering more routes on top of it)
+ * build the regular index out of the snapshot first.<br/>
+ * Snapshots carry a fingerprint of the routes they were written from and a checksum, and stale or corrupt
+ * snapshots are not loaded. The snapshot only holds the class names of action routables: loaded for the routes
+ * it was written from, its action routes resolve to the very actions registered with them.
+ *
+ * <pre>
+ * Router.getInstance().registerAll(RouteSnapshot.loadOrBuild(new File(context.getCacheDir(), "routes"),
+ *         RouteTable.builder()
+ *                 .addActivityRoute("app://www.app.com/articles/i:{articleId}/related", RelatedActivity.class)
+ *                 .addFragmentRoute("app://www.app.com/laws/i:{lawId}", LawFragment.class)));
+ * </pre>
+ *
+ * @author S1ri0S
+ */
+public final class RouteSnapshot {
+
+    static final int MAGIC = 0x52544958;
+    static final int FORMAT_VERSION = 1;
+
+    /* Header: magic, format version, fingerprint, checksum of the body, offsets of the strings, entries and roots */
+    static final int MAGIC_OFFSET = 0;
+    static final int FORMAT_VERSION_OFFSET = 4;
+    static final int FINGERPRINT_OFFSET = 8;
+    static final int CHECKSUM_OFFSET = 16;
+    static final int STRINGS_OFFSET = 20;
+    static final int ENTRIES_OFFSET = 24;
+    static final int ROOTS_OFFSET = 28;
+    static final int HEADER_SIZE = 32;
+
+    private RouteSnapshot() {
+    }
+
+    /**
+     * Load the snapshot of the given routes, or build them and write their snapshot for the next start
+     * if there is no snapshot of them yet. Failing to write the snapshot does not fail the build.
+     *
+     * @param file   The snapshot file, e.g. in the cache directory
+     * @param routes The routes, only built if the snapshot is missing or stale
+     * @return The table
+     * @throws Router.DuplicateRouteException If the routes have to be built and a route is mapped more than once
+     */
+    public static RouteTable loadOrBuild(File file, RouteTable.Builder routes) {
+        long fingerprint = routes.fingerprint();
+        RouteTable table = load(file, fingerprint, routes.actions());
+        if (table != null) {
+            return table;
+        }
+
+        table = routes.build();
+        try {
+            write(table, file, fingerprint);
+        } catch (IOException e) {
+            /* The table is good, it will just be compiled again next time */
+            file.delete();
+        }
+        return table;
+    }
+
+    /**
+     * Load the snapshot of the given routes
+     *
+     * @param file   The snapshot file
+     * @param routes The routes the snapshot was written from, whose actions the action routes resolve to
+     * @return The table or null if there is no snapshot of the given routes, or it is corrupt
+     */
+    public static RouteTable load(File file, RouteTable.Builder routes) {
+        return load(file, routes.fingerprint(), routes.actions());
+    }
+
+    /**
+     * Load a snapshot without action routes
+     *
+     * @param file        The snapshot file
+     * @param fingerprint The fingerprint the snapshot was written with, e.g. the version code of the application
+     * @return The table or null if there is no snapshot, or it was written with another fingerprint, or it is corrupt,
+     * or it has action routes, which can only be loaded with their actions (see {@link #load(File, RouteTable.Builder)})
+     */
+    public static RouteTable load(File file, long fingerprint) {
+        return load(file, fingerprint, Collections.<String, RouterAction>emptyMap());
+    }
+
+    private static RouteTable load(File file, long fingerprint, Map<String, RouterAction> actions) {
+        if (!file.isFile() || file.length() < HEADER_SIZE || file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer buffer;
+        try {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                /* The mapping stays valid once the file is closed */
+                buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(FORMAT_VERSION_OFFSET) != FORMAT_VERSION
+                || buffer.getLong(FINGERPRINT_OFFSET) != fingerprint
+                || buffer.getInt(CHECKSUM_OFFSET) != checksum(buffer)) {
+            return null;
+        }
+
+        try {
+            return new RouteTable(new MappedRouteIndex(buffer, actions));
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot of a table, replacing the file atomically
+     *
+     * @param table       The table
+     * @param file        The snapshot file
+     * @param fingerprint The fingerprint to load the snapshot with
+     */
+    public static void write(RouteTable table, File file, long fingerprint) throws IOException {
+        byte[] snapshot = serialize(table, fingerprint);
+        File temp = new File(file.getPath() + ".tmp");
+
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            output.write(snapshot);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    static byte[] serialize(RouteTable table, long fingerprint) throws IOException {
+        List<RouteIndex.Entry> entries = table.index().entries();
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        Map<String, SnapshotNode> roots = new LinkedHashMap<>();
+        List<String[]> rootKeys = new ArrayList<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            CompiledRoute route = entries.get(i).route;
+            intern(strings, route.getRoute());
+            intern(strings, route.getScheme());
+            intern(strings, route.getHost());
+            intern(strings, targetName(entries.get(i)));
+
+            String rootKey = route.getScheme() + "\u0000" + route.getHost();
+            SnapshotNode root = roots.get(rootKey);
+            if (root == null) {
+                root = new SnapshotNode();
+                roots.put(rootKey, root);
+                rootKeys.add(new String[]{route.getScheme(), route.getHost()});
+            }
+
+            SnapshotNode node = root;
+            for (int depth = 0; depth < route.getSegmentCount(); depth++) {
+                intern(strings, route.getSegment(depth));
+                if (route.getSegmentType(depth) == CompiledRoute.SEGMENT_OPTIONAL_STRING) {
+                    /* Like RouteIndex, matched without the optional wildcard too */
+                    node.entry = i;
+                }
+                node = node.child(route.getSegmentType(depth), route.getSegment(depth));
+            }
+            node.entry = i;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.write(new byte[HEADER_SIZE]);
+
+        /* Strings: count, offset of each, then each as its length and chars */
+        int stringsOffset = output.size();
+        output.writeInt(strings.size());
+        int stringOffset = stringsOffset + 4 + 4 * strings.size();
+        for (String string : strings.keySet()) {
+            output.writeInt(stringOffset);
+            stringOffset += 4 + 2 * string.length();
+        }
+        for (String string : strings.keySet()) {
+            output.writeInt(string.length());
+            output.writeChars(string);
+        }
+
+        /* Entries: count, offset of each, then each as its kind, order, strings and segments */
+        int entriesOffset = output.size();
+        output.writeInt(entries.size());
+        int entryOffset = entriesOffset + 4 + 4 * entries.size();
+        for (RouteIndex.Entry entry : entries) {
+            output.writeInt(entryOffset);
+            entryOffset += MappedRouteIndex.ENTRY_SEGMENTS + 8 * entry.route.getSegmentCount();
+        }
+        for (RouteIndex.Entry entry : entries) {
+            CompiledRoute route = entry.route;
+            output.writeInt(entry.kind.ordinal());
+            output.writeInt(entry.order);
+            output.writeInt(stringIndex(strings, route.getRoute()));
+            output.writeInt(stringIndex(strings, route.getScheme()));
+            output.writeInt(stringIndex(strings, route.getHost()));
+            output.writeInt(stringIndex(strings, targetName(entry)));
+            output.writeInt(route.getSegmentCount());
+            for (int i = 0; i < route.getSegmentCount(); i++) {
+                output.writeInt(route.getSegmentType(i));
+                output.writeInt(stringIndex(strings, route.getSegment(i)));
+            }
+        }
+
+        /* Nodes, children first so that their offsets are known */
+        int[] rootNodes = new int[rootKeys.size()];
+        int r = 0;
+        for (SnapshotNode root : roots.values()) {
+            rootNodes[r++] = writeNode(output, root, strings);
+        }
+
+        /* Roots: count, then each as its scheme, host and node */
+        int rootsOffset = output.size();
+        output.writeInt(rootKeys.size());
+        for (int i = 0; i < rootKeys.size(); i++) {
+            output.writeInt(stringIndex(strings, rootKeys.get(i)[0]));
+            output.writeInt(stringIndex(strings, rootKeys.get(i)[1]));
+            output.writeInt(rootNodes[i]);
+        }
+        output.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+        buffer.putLong(FINGERPRINT_OFFSET, fingerprint);
+        buffer.putInt(STRINGS_OFFSET, stringsOffset);
+        buffer.putInt(ENTRIES_OFFSET, entriesOffset);
+        buffer.putInt(ROOTS_OFFSET, rootsOffset);
+        buffer.putInt(CHECKSUM_OFFSET, checksum(buffer));
+        return buffer.array();
+    }
+
+    /**
+     * Write a node as its entry, int child, string child and literal children sorted by hash
+     *
+     * @return The offset of the node
+     */
+    private static int writeNode(DataOutputStream output, SnapshotNode node, Map<String, Integer> strings)
+            throws IOException {
+        int intChild = node.intChild != null ? writeNode(output, node.intChild, strings) : -1;
+        int stringChild = node.stringChild != null ? writeNode(output, node.stringChild, strings) : -1;
+
+        List<String> literals = new ArrayList<>(node.literals.keySet());
+        Collections.sort(literals, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(a.hashCode(), b.hashCode());
+            }
+        });
+        int[] literalChildren = new int[literals.size()];
+        for (int i = 0; i < literals.size(); i++) {
+            literalChildren[i] = writeNode(output, node.literals.get(literals.get(i)), strings);
+        }
+
+        int offset = output.size();
+        output.writeInt(node.entry);
+        output.writeInt(intChild);
+        output.writeInt(stringChild);
+        output.writeInt(literals.size());
+        for (int i = 0; i < literals.size(); i++) {
+            output.writeInt(literals.get(i).hashCode());
+            output.writeInt(stringIndex(strings, literals.get(i)));
+            output.writeInt(literalChildren[i]);
+        }
+        return offset;
+    }
+
+    /**
+     * @return The name of the routable class, which for actions is only informative: they are taken from the registered routes
+     */
+    private static String targetName(RouteIndex.Entry entry) {
+        return entry.target instanceof Class ? ((Class) entry.target).getName() : entry.target.getClass().getName();
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static int stringIndex(Map<String, Integer> strings, String string) {
+        return string != null ? strings.get(string) : -1;
+    }
+
+    /**
+     * @return The checksum of everything after the header
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE);
+        body.limit(buffer.capacity());
+
+        byte[] chunk = new byte[8192];
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Trie node of a snapshot being written
+     */
+    private static final class SnapshotNode {
+        final Map<String, SnapshotNode> literals = new HashMap<>();
+        SnapshotNode intChild;
+        SnapshotNode stringChild;
+        int entry = -1;
+
+        SnapshotNode child(byte type, String segment) {
+            switch (type) {
+                case CompiledRoute.SEGMENT_INT:
+                    if (intChild == null) {
+                        intChild = new SnapshotNode();
+                    }
+                    return intChild;
+                case CompiledRoute.SEGMENT_STRING:
+                case CompiledRoute.SEGMENT_OPTIONAL_STRING:
+                    if (stringChild == null) {
+                        stringChild = new SnapshotNode();
+                    }
+                    return stringChild;
+                default:
+                    SnapshotNode child = literals.get(segment);
+                    if (child == null) {
+                        child = new SnapshotNode();
+                        literals.put(segment, child);
+                    }
+                    return child;
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.sirios.androidurlrouter;
+
+import android.app.Activity;
+import android.app.Fragment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable table of mapped routes, compiled into an index ready for resolution.<br/>
+ * Tables are built in bulk with a {@link Builder}, which validates every route and compiles the
+ * index in a single pass, and registered at once with {@link Router#registerAll(RouteTable)}.
+ * Builders and tables can be merged, so that each feature module may contribute its own routes.
+ * Tables can also be loaded from a {@link RouteSnapshot}, which spares compiling them on every start.
+ *
+ * <pre>
+ * RouteTable routes = RouteTable.builder()
+ *         .addActivityRoute("app://www.app.com/articles/i:{articleId}/related", RelatedActivity.class)
+ *         .addFragmentRoute("app://www.app.com/laws/i:{lawId}", LawFragment.class)
+ *         .addAll(featureModuleRoutes)
+ *         .build();
+ * </pre>
+ *
+ * @author S1ri0S
+ */
+public final class RouteTable {
+
+    public static final RouteTable EMPTY = new RouteTable(RouteIndex.EMPTY);
+
+    /* 64 bit FNV-1a */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /* Null until a snapshot table is materialized */
+    private volatile RouteIndex index;
+    /* Null unless the table was loaded from a snapshot */
+    private final MappedRouteIndex mapped;
+    private volatile Map<String, CompiledRoute> compiledRoutes;
+
+    RouteTable(RouteIndex index) {
+        this.index = index;
+        this.mapped = null;
+    }
+
+    RouteTable(MappedRouteIndex mapped) {
+        this.mapped = mapped;
+    }
+
+    /**
+     * @return The route index, built out of the snapshot the first time for tables loaded from one
+     */
+    RouteIndex index() {
+        RouteIndex index = this.index;
+        if (index == null) {
+            /* Concurrent callers may materialize the snapshot more than once, to equivalent indexes */
+            index = mapped.materialize();
+            this.index = index;
+        }
+        return index;
+    }
+
+    /**
+     * @see RouteIndex#match(RouteUrl, ResolutionTrace)
+     */
+    RouteIndex.Entry match(RouteUrl url, ResolutionTrace trace) {
+        RouteIndex index = this.index;
+        return index != null ? index.match(url, trace) : mapped.match(url, trace);
+    }
+
+    /**
+     * @return A builder for a new table
+     */
+    public static Builder builder() {
+        return EMPTY.newBuilder();
+    }
+
+    /**
+     * @return A builder for a new table containing the routes of this one
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return The number of mapped routes
+     */
+    public int size() {
+        RouteIndex index = this.index;
+        return index != null ? index.size() : mapped.size();
+    }
+
+    /**
+     * @param route A route
+     * @return The compiled form of the route, compiling it if it is not mapped in this table
+     */
+    CompiledRoute compiled(String route) {
+        Map<String, CompiledRoute> routes = compiledRoutes;
+        if (routes == null) {
+            routes = new HashMap<>();
+            for (RouteIndex.Entry entry : index().entries()) {
+                routes.put(entry.route.getRoute(), entry.route);
+            }
+            compiledRoutes = routes;
+        }
+
+        CompiledRoute compiled = routes.get(route);
+        return compiled != null ? compiled : CompiledRoute.compile(route);
+    }
+
+    /**
+     * Builds a {@link RouteTable}. Routes are only parsed and validated by {@link #build()}.
+     */
+    public static final class Builder {
+        private final RouteTable base;
+        private final List<PendingRoute> routes = new ArrayList<>();
+
+        private Builder(RouteTable base) {
+            this.base = base;
+        }
+
+        public Builder addActivityRoute(String route, Class<? extends Activity> clazz) {
+            return add(route, RouteKind.ACTIVITY, clazz);
+        }
+
+        public Builder addFragmentRoute(String route, Class<? extends Fragment> clazz) {
+            return add(route, RouteKind.FRAGMENT, clazz);
+        }
+
+        public Builder addActionRoute(String route, RouterAction action) {
+            return add(route, RouteKind.ACTION, action);
+        }
+
+        /**
+         * Add the routes of another table, in their registration order
+         *
+         * @param table The table to merge
+         * @return The builder for method chaining
+         */
+        public Builder addAll(RouteTable table) {
+            for (RouteIndex.Entry entry : table.index().entries()) {
+                routes.add(new PendingRoute(entry.route.getRoute(), entry.route, entry.kind, entry.target));
+            }
+            return this;
+        }
+
+        /**
+         * Add the routes added to another builder so far
+         *
+         * @param builder The builder to merge
+         * @return The builder for method chaining
+         */
+        public Builder addAll(Builder builder) {
+            addAll(builder.base);
+            routes.addAll(builder.routes);
+            return this;
+        }
+
+        /**
+         * Add a route compiled ahead of time
+         *
+         * @see CompiledRoute#precompiled(String, String, String, String[], byte[])
+         */
+        public Builder addActivityRoute(CompiledRoute route, Class<? extends Activity> clazz) {
+            return add(route, RouteKind.ACTIVITY, clazz);
+        }
+
+        /**
+         * Add a route compiled ahead of time
+         *
+         * @see CompiledRoute#precompiled(String, String, String, String[], byte[])
+         */
+        public Builder addFragmentRoute(CompiledRoute route, Class<? extends Fragment> clazz) {
+            return add(route, RouteKind.FRAGMENT, clazz);
+        }
+
+        /**
+         * Add a route compiled ahead of time
+         *
+         * @see CompiledRoute#precompiled(String, String, String, String[], byte[])
+         */
+        public Builder addActionRoute(CompiledRoute route, RouterAction action) {
+            return add(route, RouteKind.ACTION, action);
+        }
+
+        private Builder add(CompiledRoute route, RouteKind kind, Object target) {
+            routes.add(new PendingRoute(route.getRoute(), route, kind, target));
+            return this;
+        }
+
+        Builder add(String route, RouteKind kind, Object target) {
+            routes.add(new PendingRoute(route, null, kind, target));
+            return this;
+        }
+
+        /**
+         * @return The action of each action route added, by mapped route
+         */
+        Map<String, RouterAction> actions() {
+            Map<String, RouterAction> actions = new HashMap<>();
+            for (RouteIndex.Entry entry : base.index().entries()) {
+                if (entry.kind == RouteKind.ACTION) {
+                    actions.put(entry.route.getRoute(), (RouterAction) entry.target);
+                }
+            }
+            for (PendingRoute route : routes) {
+                if (route.kind == RouteKind.ACTION) {
+                    actions.put(route.route, (RouterAction) route.target);
+                }
+            }
+            return actions;
+        }
+
+        /**
+         * @return A hash of the added routes and their routables, which changes whenever they do
+         * @see RouteSnapshot
+         */
+        long fingerprint() {
+            long hash = FNV_OFFSET_BASIS;
+            for (RouteIndex.Entry entry : base.index().entries()) {
+                hash = fingerprint(hash, entry.route.getRoute(), entry.kind, entry.target);
+            }
+            for (PendingRoute route : routes) {
+                hash = fingerprint(hash, route.route, route.kind, route.target);
+            }
+            return hash;
+        }
+
+        private static long fingerprint(long hash, String route, RouteKind kind, Object target) {
+            hash = fingerprint(hash, route);
+            hash = (hash ^ kind.ordinal()) * FNV_PRIME;
+            return fingerprint(hash, target instanceof Class ? ((Class) target).getName() : target.getClass().getName());
+        }
+
+        private static long fingerprint(long hash, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+            /* Separates consecutive values */
+            return (hash ^ 0xffff) * FNV_PRIME;
+        }
+
+        /**
+         * Compile the added routes
+         *
+         * @return The table
+         * @throws Router.DuplicateRouteException If a route is mapped more than once
+         */
+        public RouteTable build() {
+            RouteIndex.Builder index = base.index().newBuilder();
+
+            for (PendingRoute route : routes) {
+                CompiledRoute compiled = route.compiled != null ? route.compiled : CompiledRoute.compile(route.route);
+                checkForDuplicates(index, compiled);
+                index.add(compiled, route.kind, route.target);
+            }
+
+            return new RouteTable(index.build());
+        }
+
+        /**
+         * Check for duplicate routes when mapping a route.<br/>
+         * Routes that only differ in their wildcard names (e.g. <code>i:{a}</code> and <code>i:{b}</code>
+         * in the same position) are duplicates too, since they match exactly the same urls.
+         *
+         * @param route The route to compare to
+         */
+        private static void checkForDuplicates(RouteIndex.Builder index, CompiledRoute route) {
+            RouteIndex.Entry entry = index.findConflict(route);
+
+            if (entry == null) {
+                return;
+            }
+
+            if (entry.route.getRoute().equals(route.getRoute())) {
+                throw new Router.DuplicateRouteException("A route with the name "
+                        + route.getRoute()
+                        + " already exists mapped to "
+                        + entry.targetName());
+            }
+            throw new Router.DuplicateRouteException("The route "
+                    + route.getRoute()
+                    + " is ambiguous with the route "
+                    + entry.route.getRoute()
+                    + " already mapped to "
+                    + entry.targetName()
+                    + ", both match "
+                    + route.getNormalizedRoute());
+        }
+    }
+
+    private static final class PendingRoute {
+        final String route;
+        final CompiledRoute compiled;
+        final RouteKind kind;
+        final Object target;
+
+        PendingRoute(String route, CompiledRoute compiled, RouteKind kind, Object target) {
+            this.route = route;
+            this.compiled = compiled;
+            this.kind = kind;
+            this.target = target;
+        }
+    }
+}
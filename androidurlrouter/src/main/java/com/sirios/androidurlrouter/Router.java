@@ -2,28 +2,36 @@ package com.sirios.androidurlrouter;
 
 import android.app.Activity;
 import android.app.ActivityManager;
+import android.app.Application;
 import android.app.Fragment;
 import android.app.FragmentManager;
 import android.app.FragmentTransaction;
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Log;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Class that provides routing functionality in that it associates<br/>
- * predefined routes(URLs) with activities, fragments or generic actions ({@link RouterAction})
+ * predefined routes(URLs) with activities, fragments or generic actions ({@link RouterAction})<br/>
+ * Routes may be registered from any thread. The mapped routes are kept in an immutable index
+ * which registration replaces atomically, so resolving routes takes no locks.<br/>
+ * Each activity or window may navigate with its own {@link #newScope() scope} of the router, which shares
+ * the mapped routes but keeps its own host, current route, history and listeners.
  *
  * @author S1ri0S
  */
@@ -31,67 +39,263 @@ import java.util.regex.Pattern;
 public class Router {
 
     public static final String ROUTE = "route";
+    /* Key of the query parameters bundle, absent if the route has no query parameters.
+     * Repeated parameters are string array lists of their values, the others strings. */
     public static final String ROUTE_QUERY_PARAMS = "route_query_params";
     public static final String ROUTE_EXTRA_ARGUMENTS = "route_extra_arguments";
-    private static final String LOG_TAG = "Router";
 
+    /* Flags of the int... execRoute overloads, which cannot be combined. See NavOptions for their combinable equivalents. */
     public static final int FLAG_ADD_TO_BACKSTACK = 100;
     public static final int FLAG_POP_CURRENT_FRAGMENT = 101;
     public static final int FLAG_REPLACE_FRAGMENT = 103;
     public static final int FLAG_START_ACTIVITY_FOR_RESULT = 104;
     public static final int FLAG_OVERRIDE_SAME_ROUTE = 105;
 
-    private static Router router = new Router();
-
-    private HashMap<String, Class<? extends Activity>> activityRoutes;
-    private HashMap<String, Class<? extends Fragment>> fragmentRoutes;
-    private HashMap<String, RouterAction> actionRoutes;
+    private static final Router router = new Router();
+
+    private final RouteRegistry registry;
+    private final boolean scoped;
+    private volatile RouterMetrics metrics;
+    private volatile RouterLogger logger;
+    private volatile NavigationQueue navigationQueue;
+    private final BackgroundResolver backgroundResolver;
+    private final FragmentPool fragmentPool = new FragmentPool(FragmentPool.DEFAULT_MAX_SIZE);
+    private NavigationHistory navigationHistory = new NavigationHistory(NavigationHistory.DEFAULT_CAPACITY);
+    private final FragmentManager.OnBackStackChangedListener backStackListener = new FragmentManager.OnBackStackChangedListener() {
+        @Override
+        public void onBackStackChanged() {
+            syncNavigationHistory();
+        }
+    };
+    private final PendingNavigations pendingNavigations = new PendingNavigations(PendingNavigations.DEFAULT_MAX_SIZE);
+    private FragmentFactory fragmentFactory = FragmentFactory.DEFAULT;
     private List<OnRouteChangeListener> routeChangeListeners;
 
-    private Context context;
-    private FragmentManager fragmentManager;
+    /* The host is only referenced weakly, so that the router does not keep a destroyed activity alive */
+    private WeakReference<Context> context;
+    private WeakReference<FragmentManager> fragmentManager;
+    private HostCallbacks hostCallbacks;
+    private boolean hostDestroyed;
+    private boolean hostStateSaved;
     private int fragmentContainerView;
     private int[] fragmentTransactionAnimations;
+    private String scopeRoute;
+    private Bundle scopeArguments;
 
+    /**
+     * The current route of the routers that are not scopes, see {@link #getCurrentRoute()}
+     */
     public static String currentRoute;
     public static Bundle currentArguments;
 
     public Router() {
-        activityRoutes = new LinkedHashMap<>();
-        fragmentRoutes = new LinkedHashMap<>();
-        actionRoutes = new LinkedHashMap<>();
-        routeChangeListeners = new ArrayList<>();
+        registry = new RouteRegistry();
+        scoped = false;
+        backgroundResolver = new BackgroundResolver(this);
+        routeChangeListeners = new CopyOnWriteArrayList<>();
+        logger = new RouterLogger();
 
         fragmentTransactionAnimations = new int[]{0, 0, 0, 0};
     }
 
+    private Router(Router parent) {
+        registry = parent.registry;
+        scoped = true;
+        backgroundResolver = new BackgroundResolver(this, parent.backgroundResolver);
+        routeChangeListeners = new CopyOnWriteArrayList<>();
+        metrics = parent.metrics;
+        logger = parent.logger;
+        fragmentFactory = parent.fragmentFactory;
+
+        fragmentTransactionAnimations = parent.fragmentTransactionAnimations.clone();
+    }
+
     /**
-     * Set this Router's application context
+     * Create a router for a single host, e.g. one activity of a multi-window or multi-activity application.<br/>
+     * The scope shares the mapped routes and the resolution cache of this router, so routes registered
+     * with either are mapped in both without being copied. It keeps its own context, fragment manager and
+     * container, current route, navigation history, fragment pool and route change listeners, so navigating
+     * with one scope does not affect the others, nor the static {@link #currentRoute}.<br/>
+     * The scope starts with the metrics, logger and fragment animations of this router, and resolves routes in the
+     * background with the executors of this router unless given its own.
+     * Call {@link #releaseHost()} once its host is destroyed, unless it is {@link #attach(Activity, int) attached}
+     * to an activity: it is released from the activity's lifecycle once the activity finishes.
+     *
+     * @return The new scope
+     */
+    public Router newScope() {
+        return new Router(this);
+    }
+
+    /**
+     * @return true if this router is a {@link #newScope() scope} of another router
+     */
+    public boolean isScope() {
+        return scoped;
+    }
+
+    /**
+     * @return The route last navigated to with this router, or null
+     */
+    public String getCurrentRoute() {
+        return scoped ? scopeRoute : currentRoute;
+    }
+
+    /**
+     * @return The extra arguments of the route last navigated to with this router, or null
+     */
+    public Bundle getCurrentArguments() {
+        return scoped ? scopeArguments : currentArguments;
+    }
+
+    private void setCurrentRoute(String route, Bundle args) {
+        if (scoped) {
+            scopeRoute = route;
+            scopeArguments = args;
+        } else {
+            currentRoute = route;
+            currentArguments = args;
+        }
+    }
+
+    /**
+     * Set this Router's application context.<br/>
+     * The activity is only referenced weakly. See {@link #attach(Activity, int)} to also set its fragment manager
+     * and follow its lifecycle.
      *
      * @param activityContext The <STRONG>activity</STRONG> (not application) context
      * @return The Router instance to use for method chaining
      */
     public Router setContext(Context activityContext) {
-        context = (Activity)activityContext;
+        context = activityContext != null ? new WeakReference<Context>((Activity) activityContext) : null;
+        hostDestroyed = false;
+        hostStateSaved = false;
 
         return this;
     }
 
+    /**
+     * @return The activity context, or null if none is set or it was garbage collected
+     */
     public Context getContext() {
-        return context;
+        WeakReference<Context> context = this.context;
+        return context != null ? context.get() : null;
     }
 
+    /**
+     * Set the fragment manager fragment routes are committed to.<br/>
+     * The router listens to its back stack to keep its {@link NavigationHistory} in sync.
+     * The fragment manager is only referenced weakly.
+     *
+     * @return The Router instance to use for method chaining
+     */
     public Router setFragmentManager(FragmentManager fragmentManager) {
-        this.fragmentManager = fragmentManager;
+        FragmentManager previous = getFragmentManager();
+        if (previous != null) {
+            previous.removeOnBackStackChangedListener(backStackListener);
+        }
+        this.fragmentManager = fragmentManager != null ? new WeakReference<>(fragmentManager) : null;
+        if (fragmentManager != null) {
+            fragmentManager.addOnBackStackChangedListener(backStackListener);
+        }
+        return this;
+    }
+
+    /**
+     * @return The fragment manager, or null if none is set or it was garbage collected
+     */
+    public FragmentManager getFragmentManager() {
+        WeakReference<FragmentManager> fragmentManager = this.fragmentManager;
+        return fragmentManager != null ? fragmentManager.get() : null;
+    }
+
+    /**
+     * Make an activity the host of this router: set it as the context, set its fragment manager and
+     * fragment container, and follow its lifecycle through <code>Application.ActivityLifecycleCallbacks</code>.<br/>
+     * Once the activity is destroyed the router lets go of it. Navigations executed while the host is gone,
+     * e.g. between the destruction and the re-creation of an activity on rotation, are kept in the
+     * {@link PendingNavigations} and executed in order once the next activity attaches.
+     * The navigation history is kept across re-creations, since the fragment manager restores its back stack;
+     * it is cleared once the activity finishes.<br/>
+     * Fragment routes executed after the activity saved its state, e.g. deep links delivered while it is stopped,
+     * cannot be committed without losing them; they are also kept pending, along with every navigation
+     * following them, and executed in order once the activity resumes.
+     *
+     * @param activity              The host activity
+     * @param fragmentContainerView The id of the view fragment routes are committed to, or 0 if it has none
+     * @return The Router instance to use for method chaining
+     */
+    public Router attach(Activity activity, int fragmentContainerView) {
+        if (hostCallbacks == null) {
+            hostCallbacks = new HostCallbacks(activity.getApplication());
+            hostCallbacks.application.registerActivityLifecycleCallbacks(hostCallbacks);
+        }
+        setContext(activity);
+        setFragmentManager(activity.getFragmentManager());
+        setFragmentContainerView(fragmentContainerView);
+
+        replayPendingNavigations();
         return this;
     }
 
+    /**
+     * @return The navigations waiting for a new host or for the host to resume, along with their coalesced
+     * and dropped counters
+     */
+    public PendingNavigations getPendingNavigations() {
+        return pendingNavigations;
+    }
+
+    /**
+     * Execute the navigations that were waiting for a new host, in order.
+     * Called by {@link #attach(Activity, int)}; call it after setting a new host with
+     * {@link #setContext(Context)} and {@link #setFragmentManager(FragmentManager)} instead.
+     */
+    public void replayPendingNavigations() {
+        for (PendingNavigations.Navigation navigation : pendingNavigations.drain()) {
+            navigate(navigation.stackRoutes, navigation.stackResolvedRoutes, navigation.route, navigation.resolvedRoute,
+                    navigation.args, navigation.options);
+        }
+    }
+
+    /**
+     * Note that the host saved its state, so fragment transactions cannot be committed until it resumes,
+     * or that it resumed, in which case the navigations that were waiting for it are executed
+     */
+    void setHostStateSaved(boolean saved) {
+        hostStateSaved = saved;
+        if (!saved && pendingNavigations.size() > 0) {
+            replayPendingNavigations();
+        }
+    }
+
+    /**
+     * @return true if a host was set and has been destroyed or garbage collected since
+     */
+    private boolean isHostGone() {
+        WeakReference<Context> context = this.context;
+        if (context == null) {
+            return false;
+        }
+
+        Context host = context.get();
+        return host == null || hostDestroyed || (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && host instanceof Activity && ((Activity) host).isDestroyed());
+    }
+
     public Router setFragmentContainerView(int fragmentContainerView) {
         this.fragmentContainerView = fragmentContainerView;
         return this;
     }
 
-    public static synchronized Router getInstance() {
+    /**
+     * Set how the fragments of fragment routes are instantiated, e.g. by tests running without the framework
+     */
+    void setFragmentFactory(FragmentFactory fragmentFactory) {
+        this.fragmentFactory = fragmentFactory != null ? fragmentFactory : FragmentFactory.DEFAULT;
+    }
+
+    public static Router getInstance() {
         return router;
     }
 
@@ -114,6 +318,181 @@ public class Router {
         return this;
     }
 
+    /**
+     * Cache the outcome of resolving routes, so that resolving the same route again
+     * does not need to match it against the mapped routes.<br/>
+     * The cache is cleared whenever a route is registered or the router is reset.
+     * Routes served from the cache share their read-only query parameters. The cache is shared with the scopes of the router.
+     *
+     * @param maxSize The maximum number of cached routes, least recently used ones are evicted first.
+     *                Pass 0 to disable the cache, which is the default.
+     * @return The Router instance to use for method chaining
+     */
+    public Router setResolutionCacheSize(int maxSize) {
+        registry.setCache(maxSize > 0 ? new ResolutionCache(maxSize) : null);
+        return this;
+    }
+
+    /**
+     * Ignore the last path segment of every given route if it is a slug, i.e. words joined by hyphens
+     * (e.g. <code>big-news-today</code>), as earlier versions of the router did.<br/>
+     * Disabled by default, so literal segments and wildcard values containing hyphens match as they are.
+     * Prefer declaring an optional slug on the routes taking one, e.g. <code>app://www.app.com/news/i:{newsId}/{slug?}</code>.
+     * The setting is shared with the {@link #newScope() scopes} of this router.
+     *
+     * @param stripping true to strip trailing slugs from every given route
+     * @return The Router instance to use for method chaining
+     */
+    public Router setSlugStripping(boolean stripping) {
+        registry.setSlugStripping(stripping);
+        return this;
+    }
+
+    /**
+     * @return The resolution cache along with its hit, miss and eviction counters,
+     * or null if it is disabled
+     */
+    public ResolutionCache getResolutionCache() {
+        return registry.cache();
+    }
+
+    /**
+     * Report resolution and navigation timings to the given metrics
+     *
+     * @param metrics The metrics, e.g. a {@link HistogramRouterMetrics}, or null to stop measuring, which is the default
+     * @return The Router instance to use for method chaining
+     */
+    public Router setMetrics(RouterMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public RouterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the logger of this router, which by default only logs warnings and keeps a short navigation log
+     *
+     * @param logger The logger
+     * @return The Router instance to use for method chaining
+     */
+    public Router setLogger(RouterLogger logger) {
+        if (logger == null) {
+            throw new IllegalArgumentException("The logger must not be null, set the RouterLogger.SILENT level to disable logging");
+        }
+        this.logger = logger;
+        return this;
+    }
+
+    public RouterLogger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Set the executor resolving routes for {@link #resolveAsync(String, ResolveCallback)} and {@link #prefetch(Collection)}.
+     * By default a single background priority thread is used.
+     *
+     * @return The Router instance to use for method chaining
+     */
+    public Router setBackgroundExecutor(Executor executor) {
+        backgroundResolver.setBackgroundExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Set the executor {@link ResolveCallback}s are called on, the main thread by default
+     *
+     * @return The Router instance to use for method chaining
+     */
+    public Router setCallbackExecutor(Executor executor) {
+        backgroundResolver.setCallbackExecutor(executor);
+        return this;
+    }
+
+    /**
+     * Coalesce navigations requested in quick succession, e.g. by double taps, so that only the last one
+     * requested within the window is executed. Superseded navigations are dropped without notifying listeners.<br/>
+     * Navigations are then executed on the main thread once the window closes. Unmapped routes still throw
+     * {@link RouteNotFoundException} right away.
+     *
+     * @param windowMillis The window opened by the first navigation, 0 to coalesce the navigations requested
+     *                     up to the next frame, or a negative value to execute every navigation right away, which is the default
+     * @return The Router instance to use for method chaining
+     * @see #getNavigationQueue()
+     */
+    public Router setNavigationCoalescingWindow(long windowMillis) {
+        return setNavigationQueue(windowMillis >= 0 ? new NavigationQueue(this, windowMillis) : null);
+    }
+
+    Router setNavigationQueue(NavigationQueue queue) {
+        NavigationQueue previous = navigationQueue;
+        navigationQueue = queue;
+        if (previous != null) {
+            previous.flush();
+        }
+        return this;
+    }
+
+    /**
+     * @return The navigation queue along with its coalesced and dropped navigation counters,
+     * or null if navigations are not coalesced
+     */
+    public NavigationQueue getNavigationQueue() {
+        return navigationQueue;
+    }
+
+    /**
+     * Reuse the fragments of a fragment route instead of instantiating them on every navigation.<br/>
+     * Navigating to a url of the route with {@link NavOptions#REPLACE_FRAGMENT} finds the fragment previously created
+     * for the same wildcard values, replaces its arguments with the ones of the new navigation and attaches or shows it
+     * again. Fragments implementing {@link ReusableFragment} are told about the new arguments. When replaced, the
+     * fragments of reusable routes are detached and kept in a bounded {@link FragmentPool}. Navigations adding fragments
+     * on top of the others always instantiate them.
+     *
+     * @param mappedRoute The fragment route, as registered
+     * @param reuse       true to reuse its fragments, false to instantiate them on every navigation, which is the default
+     * @return The Router instance to use for method chaining
+     */
+    public Router setFragmentReuse(String mappedRoute, boolean reuse) {
+        fragmentPool.setReusable(mappedRoute, reuse);
+        return this;
+    }
+
+    /**
+     * @param maxSize The maximum number of detached fragments of reusable routes to keep, least recently
+     *                detached ones are removed first. 3 by default.
+     * @return The Router instance to use for method chaining
+     */
+    public Router setFragmentPoolSize(int maxSize) {
+        fragmentPool.setMaxSize(maxSize);
+        return this;
+    }
+
+    /**
+     * @return The fragment pool along with its reuse and eviction counters
+     */
+    public FragmentPool getFragmentPool() {
+        return fragmentPool;
+    }
+
+    /**
+     * @param capacity The maximum number of routes kept in the navigation history, oldest ones are dropped first.
+     *                 32 by default. Changing it clears the history.
+     * @return The Router instance to use for method chaining
+     */
+    public Router setNavigationHistorySize(int capacity) {
+        navigationHistory = new NavigationHistory(capacity);
+        return this;
+    }
+
+    /**
+     * @return The stack of activity and fragment routes navigated to, kept in sync with the fragment back stack
+     */
+    public NavigationHistory getNavigationHistory() {
+        return navigationHistory;
+    }
+
     public void addOnRouteChangeListener(OnRouteChangeListener listener) {
         routeChangeListeners.add(listener);
     }
@@ -123,17 +502,47 @@ public class Router {
     }
 
     /**
-     * Resets the router's properties
+     * Resets the router's properties.<br/>
+     * Resetting a {@link #newScope() scope} leaves the routes it shares mapped.
      *
      * @return Router for method chaining
      */
     public Router reset() {
-        activityRoutes.clear();
-        fragmentRoutes.clear();
-        actionRoutes.clear();
+        if (!scoped) {
+            registry.clear();
+        }
+        releaseHost();
         fragmentTransactionAnimations = new int[]{0, 0, 0, 0};
-        currentRoute = null;
+        fragmentFactory = FragmentFactory.DEFAULT;
+
+        return this;
+    }
+
+    /**
+     * Forget the host of this router, e.g. when its scope is discarded: pending navigations are cancelled, and
+     * the context, fragment manager, current route, navigation history and pooled fragments are dropped.
+     * The router stops following the lifecycle of an {@link #attach(Activity, int) attached} activity.
+     * Route change listeners are kept.
+     *
+     * @return Router for method chaining
+     */
+    public Router releaseHost() {
+        NavigationQueue queue = navigationQueue;
+        if (queue != null) {
+            queue.cancel();
+        }
+        pendingNavigations.clear();
+        fragmentPool.clear();
+        navigationHistory.clear();
+        setFragmentManager(null);
+        setCurrentRoute(null, null);
         context = null;
+        hostStateSaved = false;
+
+        if (hostCallbacks != null) {
+            hostCallbacks.application.unregisterActivityLifecycleCallbacks(hostCallbacks);
+            hostCallbacks = null;
+        }
 
         return this;
     }
@@ -146,10 +555,7 @@ public class Router {
      * @return Router for method chaining
      */
     public Router registerActivityRoute(String route, Class<? extends Activity> clazz) {
-        checkForDuplicates(route);
-        activityRoutes.put(route, clazz);
-
-        return this;
+        return register(route, RouteKind.ACTIVITY, clazz);
     }
 
     public Router registerActivityRoute(int routeStringRes, Class<? extends Activity> clazz) {
@@ -157,10 +563,7 @@ public class Router {
     }
 
     public Router registerFragmentRoute(String route, Class<? extends Fragment> clazz) {
-        checkForDuplicates(route);
-        fragmentRoutes.put(route, clazz);
-
-        return this;
+        return register(route, RouteKind.FRAGMENT, clazz);
     }
 
     public Router registerFragmentRoute(int routeStringRes, Class<? extends Fragment> clazz) {
@@ -168,10 +571,7 @@ public class Router {
     }
 
     public Router registerActionRoute(String route, RouterAction action) {
-        checkForDuplicates(route);
-        actionRoutes.put(route, action);
-
-        return this;
+        return register(route, RouteKind.ACTION, action);
     }
 
     public Router registerActionRoute(int routeStringRes, RouterAction action) {
@@ -179,46 +579,51 @@ public class Router {
     }
 
     /**
-     * Check for duplicate routes when mapping a route
+     * Map all the routes of a route table at once.<br/>
+     * The routes are validated and compiled in a single pass and published atomically,
+     * which is much cheaper than registering many routes one by one.
      *
-     * @param route The route to compare to
+     * @param routes The routes to map
+     * @return Router for method chaining
+     * @throws DuplicateRouteException If a route is already mapped, in which case no route is mapped
      */
-    private void checkForDuplicates(String route) {
+    public Router registerAll(RouteTable routes) {
+        registry.addAll(routes);
+        return this;
+    }
 
-        for (Map.Entry<String, Class<? extends Activity>> entry : activityRoutes.entrySet()) {
-            if (entry.getKey().equals(route)) {
-                throw new DuplicateRouteException("A route with the name "
-                        + route
-                        + " already exists mapped to "
-                        + entry.getValue().getSimpleName());
-            }
-        }
+    /**
+     * @see #registerAll(RouteTable)
+     */
+    public Router registerAll(RouteTable.Builder routes) {
+        registry.addAll(routes);
+        return this;
+    }
 
-        for (Map.Entry<String, Class<? extends Fragment>> entry : fragmentRoutes.entrySet()) {
-            if (entry.getKey().equals(route))
-                throw new DuplicateRouteException("A route with the name "
-                        + route
-                        + " already exists mapped to "
-                        + entry.getValue().getSimpleName());
-        }
+    /**
+     * @return The currently mapped routes
+     */
+    public RouteTable getRouteTable() {
+        return registry.table();
+    }
 
-        for (Map.Entry<String, RouterAction> entry : actionRoutes.entrySet()) {
-            if (entry.getKey().equals(route)) {
-                throw new DuplicateRouteException("A route with the name "
-                        + route
-                        + " already exists mapped to "
-                        + entry.getValue().getClass().getSimpleName());
-            }
-        }
+    private Router register(String route, RouteKind kind, Object target) {
+        registry.add(route, kind, target);
+        return this;
     }
 
-    private void checkCanSupportFragmentTransactions() {
+    /**
+     * @return The fragment manager
+     */
+    private FragmentManager checkCanSupportFragmentTransactions() {
+        FragmentManager fragmentManager = getFragmentManager();
         if (fragmentManager == null) {
             throw new IllegalStateException("You haven't provided a fragment manager. Use Router.setFragmentManager");
         }
         if (fragmentContainerView == 0) {
             throw new IllegalStateException("You haven't provided a fragment container view id. Use Router.setFragmentContainerView");
         }
+        return fragmentManager;
     }
 
     /**
@@ -228,120 +633,437 @@ public class Router {
      * @param route The route to execute
      * @param args  Extra arguments you wish to pass as fragment arguments or intent data to the Routable object
      * @param flags Flags for signaling specific required actions (e.g. adding a fragment transaction to the backstack)
+     * @see #navigate(String, Bundle, NavOptions)
      */
     public void execRoute(String route, Bundle args, int... flags) {
+        navigate(route, args, NavOptions.fromLegacyFlags(flags));
+    }
+
+    /**
+     * Calls {@link Router#navigate(String, Bundle, NavOptions)} with no extra arguments.
+     *
+     * @param route   The route to execute
+     * @param options The navigation options, may be null
+     */
+    public void navigate(String route, NavOptions options) {
+        navigate(route, null, options);
+    }
+
+    /**
+     * Execute the appropriate routable for the given route.<br/>
+     * Named apart from the <code>execRoute</code> overloads taking legacy flags, so that passing null
+     * flags or options to either stays unambiguous.
+     *
+     * @param route   The route to execute
+     * @param args    Extra arguments you wish to pass as fragment arguments or intent data to the Routable object
+     * @param options The navigation options (e.g. adding a fragment transaction to the backstack), may be null
+     */
+    public void navigate(String route, Bundle args, NavOptions options) {
+        Route resolvedRoute = resolveRoute(route);
+        NavigationQueue queue = navigationQueue;
+
+        /* Unmapped routes fail right away even when navigations are coalesced */
+        if (queue != null && resolvedRoute != null) {
+            queue.enqueue(route, resolvedRoute, args, options);
+            return;
+        }
+        execute(route, resolvedRoute, args, options);
+    }
+
+    /**
+     * Execute a route already resolved, e.g. by {@link #resolveAsync(String, ResolveCallback)}, without resolving it again.
+     *
+     * @param resolvedRoute The resolved route
+     * @param args          Extra arguments you wish to pass as fragment arguments or intent data to the Routable object
+     * @param options       The navigation options (e.g. adding a fragment transaction to the backstack), may be null
+     * @see #navigate(String, Bundle, NavOptions)
+     */
+    public void navigate(Route resolvedRoute, Bundle args, NavOptions options) {
+        if (resolvedRoute == null) {
+            throw new IllegalArgumentException("No resolved route to execute");
+        }
+
+        String route = resolvedRoute.getCleanRoute();
+        NavigationQueue queue = navigationQueue;
+        if (queue != null) {
+            queue.enqueue(route, resolvedRoute, args, options);
+            return;
+        }
+        execute(route, resolvedRoute, args, options);
+    }
+
+    /**
+     * Navigate back to a route if it is in the {@link NavigationHistory}, instead of pushing it again.<br/>
+     * Fragment routes on the back stack are popped back to in a single <code>popBackStack</code>,
+     * and activity routes are started again, which finishes the activities above them.
+     * Routes that cannot be popped back to are executed as usual.
+     *
+     * @param route The route to navigate up to
+     * @see NavOptions#POP_TO_EXISTING
+     */
+    public void navigateUpTo(String route) {
+        navigate(route, null, NavOptions.of(NavOptions.POP_TO_EXISTING));
+    }
 
-        Route resolvedRoute;
-        resolvedRoute = resolveRoute(route);
-        List<Integer> activeFlags = new ArrayList<>();
+    /**
+     * Execute a resolved route
+     *
+     * @param resolvedRoute The resolved route, null if the route is not mapped
+     */
+    void execute(String route, Route resolvedRoute, Bundle args, NavOptions options) {
+        navigate(Collections.<String>emptyList(), Collections.<Route>emptyList(), route, resolvedRoute, args, options);
+    }
 
-        Log.d("Router:", "Route -> " + route);
+    /**
+     * Execute the appropriate routables for a stack of routes at once, e.g. to restore the fragments
+     * a deep link leads through.<br/>
+     * Every route is resolved before anything is executed. The fragments of all but the last route are
+     * pushed below the last one: without {@link NavOptions#ADD_TO_BACKSTACK} in a single transaction, with it
+     * in one transaction per back stack entry, all committed before the fragment manager executes any of them.
+     * Only the last route is animated in, and route change listeners are only notified of the last route.
+     * Like single routes, stacks go through the navigation coalescing window if one is set.
+     *
+     * @param routes  The routes to execute, all but the last one must be mapped to fragments
+     * @param args    Extra arguments you wish to pass to the routable of the last route
+     * @param options The navigation options, applied to every route, may be null
+     * @throws RouteNotFoundException If any route is not mapped, in which case none is executed
+     */
+    public void execRoutes(List<String> routes, Bundle args, NavOptions options) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("No routes to execute");
+        }
 
-        if (flags.length > 0) {
-            for (int i : flags) {
-                activeFlags.add(i);
+        int last = routes.size() - 1;
+        List<Route> resolvedRoutes = new ArrayList<>(routes.size());
+        for (int i = 0; i <= last; i++) {
+            Route resolvedRoute = resolveRoute(routes.get(i));
+
+            if (resolvedRoute == null) {
+                NavigationLog navigationLog = logger.getNavigationLog();
+                if (navigationLog != null) {
+                    navigationLog.record(routes.get(i), null, null, System.currentTimeMillis(), 0);
+                }
+                throw new RouteNotFoundException("The provided route: " + routes.get(i) + " is not mapped");
+            }
+            if (i < last && !(resolvedRoute instanceof FragmentRoute)) {
+                throw new IllegalArgumentException("The route " + routes.get(i)
+                        + " is not mapped to a fragment, only the last route may be mapped to an activity or action");
             }
+            resolvedRoutes.add(resolvedRoute);
         }
 
-        /* If it's the same route don't do anything unless FLAG_OVERRIDE_SAME_ROUTE is given */
-        if (currentRoute != null && currentRoute.equals(route) && !activeFlags.contains(FLAG_OVERRIDE_SAME_ROUTE)) {
+        List<String> stackRoutes = new ArrayList<>(routes.subList(0, last));
+        List<Route> stackResolvedRoutes = resolvedRoutes.subList(0, last);
+        NavigationQueue queue = navigationQueue;
+        if (queue != null) {
+            queue.enqueue(stackRoutes, stackResolvedRoutes, routes.get(last), resolvedRoutes.get(last), args, options);
+            return;
+        }
+        navigate(stackRoutes, stackResolvedRoutes, routes.get(last), resolvedRoutes.get(last), args, options);
+    }
+
+    /**
+     * Calls {@link Router#execRoutes(List, Bundle, NavOptions)} with no extra arguments.
+     */
+    public void execRoutes(List<String> routes, NavOptions options) {
+        execRoutes(routes, null, options);
+    }
+
+    /**
+     * Execute a resolved route, after pushing the fragments of the given stack of resolved fragment routes
+     *
+     * @param resolvedRoute The resolved route, null if the route is not mapped
+     */
+    void navigate(List<String> stackRoutes, List<Route> stackResolvedRoutes,
+                          String route, Route resolvedRoute, Bundle args, NavOptions options) {
+
+        RouterMetrics metrics = this.metrics;
+        RouterLogger logger = this.logger;
+        NavigationLog navigationLog = logger.getNavigationLog();
+        long navigationStart = navigationLog != null ? System.nanoTime() : 0;
+        long navigationTimestamp = navigationLog != null ? System.currentTimeMillis() : 0;
+
+        String mappedRoute = resolvedRoute != null ? resolvedRoute.getMappedRoute() : null;
+        long listenerNanos = 0;
+        long start;
+        if (options == null) {
+            options = NavOptions.NONE;
+        }
+
+        if (logger.isLoggable(Log.DEBUG)) {
+            logger.log(Log.DEBUG, "Route -> " + route);
+        }
+
+        /* Wait for a new host rather than navigating with a destroyed one, and for the host to resume rather than
+         * committing fragments after it saved its state. Navigations following pending ones wait as well, to keep their order. */
+        if (resolvedRoute != null && (isHostGone() || (hostStateSaved && (pendingNavigations.size() > 0
+                || resolvedRoute instanceof FragmentRoute || !stackRoutes.isEmpty() || options.has(NavOptions.POP_TO_EXISTING))))) {
+            if (logger.isLoggable(Log.DEBUG)) {
+                logger.log(Log.DEBUG, "The host is not available, " + route + " is pending");
+            }
+            pendingNavigations.add(new PendingNavigations.Navigation(new ArrayList<>(stackRoutes),
+                    new ArrayList<>(stackResolvedRoutes), route, resolvedRoute, args, options));
+            return;
+        }
+
+        /* If it's the same route don't do anything unless OVERRIDE_SAME_ROUTE is given */
+        String current = getCurrentRoute();
+        if (current != null && current.equals(route) && !options.has(NavOptions.OVERRIDE_SAME_ROUTE)) {
             return;
         }
 
         /* NOTIFY LISTENERS */
         if (!routeChangeListeners.isEmpty()) {
+            start = metrics != null ? System.nanoTime() : 0;
             for (OnRouteChangeListener listener : routeChangeListeners) {
                 listener.onBeforeRouteChange(route);
             }
+            if (metrics != null) {
+                listenerNanos = System.nanoTime() - start;
+            }
         }
 
         if (resolvedRoute != null) {
             resolvedRoute.setRoute(route);
+            start = metrics != null ? System.nanoTime() : 0;
 
-            currentRoute = route;
-            currentArguments = args;
+            setCurrentRoute(route, args);
 
-            if (resolvedRoute instanceof ActionRoute) {
-                ActionRoute actionRoute = ((ActionRoute) resolvedRoute);
-                actionRoute.getResult().setRouteArguments(new Bundle());
-
-                if (args != null) {
-                    actionRoute.getResult().addRouteArguments(args);
+            if (options.has(NavOptions.POP_TO_EXISTING) && popToExisting(route, resolvedRoute, args)) {
+                if (logger.isLoggable(Log.DEBUG)) {
+                    logger.log(Log.DEBUG, "Popped back to " + route);
                 }
+            } else if (resolvedRoute instanceof FragmentRoute) {
+                List<String> routes = new ArrayList<>(stackRoutes);
+                List<Route> resolvedRoutes = new ArrayList<>(stackResolvedRoutes);
+                routes.add(route);
+                resolvedRoutes.add(resolvedRoute);
+
+                commitFragments(routes, resolvedRoutes, args, options, logger);
+            } else {
+                if (!stackRoutes.isEmpty()) {
+                    commitFragments(stackRoutes, stackResolvedRoutes, null, options, logger);
+                }
+
+                if (resolvedRoute instanceof ActionRoute) {
+                    ActionRoute actionRoute = ((ActionRoute) resolvedRoute);
+                    actionRoute.getResult().setRouteArguments(new Bundle());
 
-                if (actionRoute.getWildcards() != null) {
-                    for (Map.Entry<String, Comparable> entry : actionRoute.getWildcards().entrySet()) {
-                        if (entry.getValue() instanceof Integer) {
-                            actionRoute.getResult().getRouteArguments().putInt(entry.getKey(), (Integer) entry.getValue());
-                        } else {
-                            actionRoute.getResult().getRouteArguments().putString(entry.getKey(), (String) entry.getValue());
-                        }
+                    if (args != null) {
+                        actionRoute.getResult().addRouteArguments(args);
                     }
-                }
 
-                if (actionRoute.getQueryParams() != null) {
-                    Bundle queryParams = new Bundle();
-                    for (Map.Entry<String, String> entry : actionRoute.getQueryParams().entrySet()) {
-                        queryParams.putString(entry.getKey(), entry.getValue());
+                    putWildcards(actionRoute, actionRoute.getResult().getRouteArguments());
+
+                    Bundle queryParams = assembleQueryParams(actionRoute);
+                    if (queryParams != null) {
+                        actionRoute.getResult().getRouteArguments().putBundle(ROUTE_QUERY_PARAMS, queryParams);
                     }
-                    actionRoute.getResult().getRouteArguments().putBundle(ROUTE_QUERY_PARAMS, queryParams);
+
+                    if (logger.isLoggable(Log.DEBUG)) {
+                        logger.log(Log.DEBUG, "Executing router action " + actionRoute.getResult().getClass().getSimpleName());
+                    }
+                    actionRoute.getResult().doAction(getContext(), resolvedRoute);
+
+                } else if (resolvedRoute instanceof ActivityRoute) {
+                    Intent intent = assembleIntent(resolvedRoute, args);
+                    getContext().startActivity(intent);
+                    navigationHistory.push(route, RouteKind.ACTIVITY, null, args);
                 }
+            }
 
-                Log.d(LOG_TAG, "Executing router action " + actionRoute.getResult().getClass().getSimpleName());
-                actionRoute.getResult().doAction(context, resolvedRoute);
+            if (metrics != null) {
+                metrics.onRouteExecuted(route, mappedRoute, kindOf(resolvedRoute), System.nanoTime() - start);
+            }
+        } else {
+            if (navigationLog != null) {
+                navigationLog.record(route, null, null, navigationTimestamp, System.nanoTime() - navigationStart);
+            }
+            throw new RouteNotFoundException("The provided route: " + route + " is not mapped");
+        }
 
-            } else if (resolvedRoute instanceof FragmentRoute) {
-                checkCanSupportFragmentTransactions();
+        /* NOTIFY LISTENERS */
+        if (!routeChangeListeners.isEmpty()) {
+            start = metrics != null ? System.nanoTime() : 0;
+            for (OnRouteChangeListener listener : routeChangeListeners) {
+                listener.onAfterRouteChange(route);
+            }
+            if (metrics != null) {
+                listenerNanos += System.nanoTime() - start;
+                metrics.onListenersNotified(route, mappedRoute, listenerNanos);
+            }
+        }
+
+        if (navigationLog != null) {
+            navigationLog.record(route, mappedRoute, kindOf(resolvedRoute), navigationTimestamp,
+                    System.nanoTime() - navigationStart);
+        }
+    }
+
+    /**
+     * Commit the fragments of the given resolved fragment routes, in order.<br/>
+     * Fragments only get their own transaction if they need their own back stack entry, and the transactions
+     * are all committed before the fragment manager executes any of them. Only the last fragment is animated in.
+     *
+     * @param args Extra arguments for the last fragment
+     */
+    private void commitFragments(List<String> routes, List<Route> resolvedRoutes, Bundle args, NavOptions options,
+                                 RouterLogger logger) {
+        FragmentManager fragmentManager = checkCanSupportFragmentTransactions();
+
+        if (logger.isLoggable(Log.WARN)
+                && fragmentManager.getBackStackEntryCount() == 0 && options.has(NavOptions.ADD_TO_BACKSTACK)) {
+            logger.log(Log.WARN, "Backstack is empty. If this is the first fragment in the activity's view hierarchy," +
+                    " perhaps you shouldn't add it to the backstack.");
+        }
 
-                Fragment fragment = assembleFragment(resolvedRoute);
+        if (options.has(NavOptions.POP_CURRENT_FRAGMENT)) {
+            fragmentManager.popBackStackImmediate();
+        }
 
-                if (args != null) {
+        int last = routes.size() - 1;
+        FragmentTransaction transaction = null;
+
+        for (int i = 0; i <= last; i++) {
+            String route = routes.get(i);
+            Route resolvedRoute = resolvedRoutes.get(i);
+            resolvedRoute.setRoute(route);
+
+            String tag = route;
+            Fragment fragment = null;
+
+            /* Only a fragment replacing the container's fragments is reused: added on top of them, a reused fragment
+             * would stay below the fragments added after it */
+            if (options.has(NavOptions.REPLACE_FRAGMENT) && fragmentPool.isReusable(resolvedRoute.getMappedRoute())) {
+                tag = FragmentPool.tagOf(resolvedRoute);
+                fragment = fragmentPool.acquire(fragmentManager, tag);
+            }
+
+            boolean reused = fragment != null;
+            if (reused) {
+                /* An active fragment's arguments cannot be set, but they can be replaced */
+                Bundle fragArgs = fragment.getArguments();
+                fragArgs.clear();
+                fragArgs.putAll(assembleFragmentArguments(resolvedRoute));
+                if (i == last && args != null) {
+                    fragArgs.putAll(args);
+                }
+                if (fragment instanceof ReusableFragment) {
+                    ((ReusableFragment) fragment).onRouteArgumentsChanged(fragArgs);
+                }
+            } else {
+                fragment = assembleFragment(resolvedRoute);
+
+                if (i == last && args != null) {
                     Bundle fragArgs = fragment.getArguments();
                     fragArgs.putAll(args);
                     fragment.setArguments(fragArgs);
                 }
+            }
 
-                if (fragmentManager.getBackStackEntryCount() == 0 && activeFlags.contains(FLAG_ADD_TO_BACKSTACK)) {
-                    Log.w(LOG_TAG, "Backstack is empty. If this is the first fragment in the activity's view hierarchy," +
-                            " perhaps you shouldn't add it to the backstack.");
+            if (logger.isLoggable(Log.DEBUG)) {
+                logger.log(Log.DEBUG, (reused ? "Reusing fragment " : "Initiating fragment ") + fragment.getClass().getName());
+            }
+
+            if (transaction == null) {
+                transaction = fragmentManager.beginTransaction();
+            }
+            /* Fragments pushed below the last one are not animated in, only when they are popped back */
+            transaction.setCustomAnimations(i == last ? fragmentTransactionAnimations[0] : 0,
+                    i == last ? fragmentTransactionAnimations[1] : 0,
+                    fragmentTransactionAnimations[2], fragmentTransactionAnimations[3]);
+
+            if (options.has(NavOptions.REPLACE_FRAGMENT)) {
+                /* Keep a replaced reusable fragment detached instead of destroying it */
+                Fragment current = i == 0 ? fragmentManager.findFragmentById(fragmentContainerView) : null;
+                if (current != null && current != fragment && fragmentPool.isReusableTag(current.getTag())) {
+                    fragmentPool.release(fragmentManager, transaction, current);
                 }
-                Log.d("Router: ", "Initiating fragment " + fragment.getClass().getName());
+            }
 
-                if (activeFlags.contains(FLAG_POP_CURRENT_FRAGMENT)) {
-                    fragmentManager.popBackStackImmediate();
+            if (reused) {
+                if (fragment.isDetached()) {
+                    transaction.attach(fragment);
                 }
+                if (fragment.isHidden()) {
+                    transaction.show(fragment);
+                }
+                /* Replacing with an added fragment keeps it and removes the others */
+                transaction.replace(fragmentContainerView, fragment, tag);
+            } else if (options.has(NavOptions.REPLACE_FRAGMENT)) {
+                transaction.replace(fragmentContainerView, fragment, tag);
+            } else {
+                transaction.add(fragmentContainerView, fragment, tag);
+            }
 
-                String fragmentTag = route + "_" + String.valueOf(System.currentTimeMillis());
-                FragmentTransaction transaction = fragmentManager.beginTransaction();
-                transaction.setCustomAnimations(fragmentTransactionAnimations[0], fragmentTransactionAnimations[1],
-                        fragmentTransactionAnimations[2], fragmentTransactionAnimations[3]);
+            String fragmentTag = null;
+            if (options.has(NavOptions.ADD_TO_BACKSTACK)) {
+                fragmentTag = route + "_" + String.valueOf(System.currentTimeMillis());
+                transaction.addToBackStack(fragmentTag);
+                transaction.commit();
+                transaction = null;
+            } else if (options.has(NavOptions.REPLACE_FRAGMENT)) {
+                /* A fragment replaced outside of the back stack cannot be navigated back to */
+                NavigationHistory history = navigationHistory;
+                int top = history.size() - 1;
+                if (top >= 0 && history.getKind(top) == RouteKind.FRAGMENT && history.getBackStackName(top) == null) {
+                    history.truncate(top);
+                }
+            }
+            navigationHistory.push(route, RouteKind.FRAGMENT, fragmentTag, i == last ? args : null);
+        }
 
+        if (transaction != null) {
+            transaction.commit();
+        }
+    }
 
-                if (activeFlags.contains(FLAG_REPLACE_FRAGMENT)) {
-                    transaction.replace(fragmentContainerView, fragment, route);
-                } else {
-                    transaction.add(fragmentContainerView, fragment, route);
-                }
+    /**
+     * Pop the navigation history back to the topmost occurrence of a route, if it can be popped back to at once
+     *
+     * @return true if the route was popped back to, false if it must be executed
+     */
+    private boolean popToExisting(String route, Route resolvedRoute, Bundle args) {
+        NavigationHistory history = navigationHistory;
+        int position = history.indexOf(route);
+        if (position == -1) {
+            return false;
+        }
 
-                if (activeFlags.contains(FLAG_ADD_TO_BACKSTACK)) {
-                    transaction.addToBackStack(fragmentTag);
-                }
+        String backStackName = history.getBackStackName(position);
+        if (backStackName != null) {
+            checkCanSupportFragmentTransactions().popBackStack(backStackName, 0);
+        } else if (history.getKind(position) == RouteKind.ACTIVITY && resolvedRoute instanceof ActivityRoute) {
+            /* Activity intents clear the activities above an existing instance of the activity */
+            getContext().startActivity(assembleIntent(resolvedRoute, args));
+        } else if (position != history.size() - 1) {
+            return false;
+        }
 
-                transaction.commit();
+        history.truncate(position + 1);
+        setCurrentRoute(route, args != null ? args : history.getArguments(position));
+        return true;
+    }
 
-            } else if (resolvedRoute instanceof ActivityRoute) {
-                Intent intent = assembleIntent(resolvedRoute, args);
-                context.startActivity(intent);
-            }
-        } else {
-            throw new RouteNotFoundException("The provided route: " + route + " is not mapped");
+    /**
+     * Pop the routes whose fragments were popped off the back stack off the navigation history
+     */
+    private void syncNavigationHistory() {
+        FragmentManager fragmentManager = getFragmentManager();
+        if (fragmentManager == null) {
+            return;
         }
 
-        /* NOTIFY LISTENERS */
-        if (!routeChangeListeners.isEmpty()) {
-            for (OnRouteChangeListener listener : routeChangeListeners) {
-                listener.onAfterRouteChange(route);
-            }
+        int count = fragmentManager.getBackStackEntryCount();
+        Set<String> names = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            names.add(fragmentManager.getBackStackEntryAt(i).getName());
+        }
+
+        NavigationHistory history = navigationHistory;
+        if (history.retainBackStack(names)) {
+            int top = history.size() - 1;
+            setCurrentRoute(top >= 0 ? history.getRoute(top) : null, top >= 0 ? history.getArguments(top) : null);
         }
     }
 
@@ -356,31 +1078,24 @@ public class Router {
 
     public Intent assembleIntent(Route resolvedRoute, Bundle args) {
         ActivityRoute route = (ActivityRoute) resolvedRoute;
-        Intent intent = new Intent(context, route.getResult());
+        Intent intent = new Intent(getContext(), route.getResult());
         intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
         if (null != args) {
             intent.putExtra(ROUTE_EXTRA_ARGUMENTS, args);
         }
 
-        if (route.getWildcards() != null && !route.getWildcards().isEmpty()) {
-            Map<String, Comparable> wc = route.getWildcards();
-            for (Map.Entry<String, Comparable> entry : wc.entrySet()) {
-                if (entry.getValue() instanceof Integer) {
-                    intent.putExtra(entry.getKey(), (Integer) entry.getValue());
-                } else {
-                    intent.putExtra(entry.getKey(), (String) entry.getValue());
-                }
-            }
+        if (route.getArguments() != null) {
+            route.getArguments().writeTo(intent);
+        } else if (route.getWildcards() != null) {
+            Bundle wildcards = new Bundle();
+            putWildcards(route, wildcards);
+            intent.putExtras(wildcards);
         }
 
-        Bundle qparams = new Bundle();
-        if (route.getQueryParams() != null && !route.getQueryParams().isEmpty()) {
-            Map<String, String> qp = route.getQueryParams();
-            for (Map.Entry<String, String> entry : qp.entrySet()) {
-                qparams.putString(entry.getKey(), entry.getValue());
-            }
+        Bundle queryParams = assembleQueryParams(route);
+        if (queryParams != null) {
+            intent.putExtra(ROUTE_QUERY_PARAMS, queryParams);
         }
-        intent.putExtra(ROUTE_QUERY_PARAMS, qparams);
 
         return intent;
     }
@@ -393,118 +1108,109 @@ public class Router {
     public Fragment assembleFragment(Route resolvedRoute) {
 
         FragmentRoute fragRoute = ((FragmentRoute) resolvedRoute);
-        Fragment frag = Fragment.instantiate(context, fragRoute.getResult().getName());
+        Fragment frag = fragmentFactory.instantiate(getContext(), fragRoute.getResult().getName());
+        frag.setArguments(assembleFragmentArguments(resolvedRoute));
+
+        return frag;
+    }
+
+    /**
+     * @return The fragment arguments holding the wildcards, query parameters and route of a resolved route
+     */
+    private Bundle assembleFragmentArguments(Route resolvedRoute) {
+        FragmentRoute fragRoute = ((FragmentRoute) resolvedRoute);
         Bundle args = new Bundle();
 
-        if (fragRoute.getWildcards() != null && !fragRoute.getWildcards().isEmpty()) {
-            Map<String, Comparable> wc = fragRoute.getWildcards();
-            for (Map.Entry<String, Comparable> entry : wc.entrySet()) {
-                if (entry.getValue() instanceof Integer) {
-                    args.putInt(entry.getKey(), (Integer) entry.getValue());
-                } else {
-                    args.putString(entry.getKey(), (String) entry.getValue());
-                }
-            }
-        }
+        putWildcards(fragRoute, args);
 
-        if (fragRoute.getQueryParams() != null && !fragRoute.getQueryParams().isEmpty()) {
-            Bundle queryParams = new Bundle();
-            Map<String, String> qp = fragRoute.getQueryParams();
-            for (Map.Entry<String, String> entry : qp.entrySet()) {
-                queryParams.putString(entry.getKey(), entry.getValue());
-            }
+        Bundle queryParams = assembleQueryParams(fragRoute);
+        if (queryParams != null) {
             args.putBundle(ROUTE_QUERY_PARAMS, queryParams);
         }
 
         args.putString(ROUTE, resolvedRoute.getRoute());
-        frag.setArguments(args);
 
-        return frag;
+        return args;
     }
 
-    public RouteMatch checkRouteKeys(String givenRoute, Set<String> mappedRoutes) {
-        boolean res;
-        String matchedRoute = null;
-        Uri givenUri = Uri.parse(givenRoute);
-        Map<String, Comparable> args = null;
-
-        /* Check for slug at the end of url */
-        String lastSegment = givenUri.getPathSegments().get(givenUri.getPathSegments().size() - 1);
-        String slugRegex = "(([a-zA-Z0-9]+\\-)+[a-zA-Z0-9]+)";
-        if (lastSegment.matches(slugRegex)) {
-            Uri.Builder builder = new Uri.Builder();
-            builder.scheme(givenUri.getScheme());
-            builder.authority(givenUri.getAuthority());
+    /**
+     * @return The query parameters of a resolved route, or null if it has none. A parameter given once is a string,
+     * a repeated one is a string array list holding its values in query order
+     */
+    private static Bundle assembleQueryParams(Route resolvedRoute) {
+        Map<String, String> queryParams = resolvedRoute.getQueryParams();
+        if (queryParams == null || queryParams.isEmpty()) {
+            return null;
+        }
 
-            for (int j = 0; j < givenUri.getPathSegments().size() - 1; j++) {
-                builder.appendPath(givenUri.getPathSegments().get(j));
+        boolean repeated = resolvedRoute.hasRepeatedQueryParams();
+        Bundle bundle = new Bundle();
+        for (Map.Entry<String, String> entry : queryParams.entrySet()) {
+            List<String> values = repeated ? resolvedRoute.getQueryParamValues(entry.getKey()) : null;
+            if (values != null && values.size() > 1) {
+                bundle.putStringArrayList(entry.getKey(), new ArrayList<>(values));
+            } else {
+                bundle.putString(entry.getKey(), entry.getValue());
             }
-            builder.query(givenUri.getQuery());
+        }
+        return bundle;
+    }
 
-            givenUri = builder.build();
+    /**
+     * @return The kind of the given resolved route
+     */
+    private static RouteKind kindOf(Route route) {
+        if (route instanceof ActivityRoute) {
+            return RouteKind.ACTIVITY;
+        } else if (route instanceof FragmentRoute) {
+            return RouteKind.FRAGMENT;
         }
+        return RouteKind.ACTION;
+    }
 
-        for (String mappedRoute : mappedRoutes) {
-            res = true;
-            args = new HashMap<>();
-            Uri mappedUri = Uri.parse(mappedRoute);
-            List<String> mappedSegments = mappedUri.getPathSegments();
-
-            if (!mappedUri.getScheme().equals(givenUri.getScheme())) {
-                res = false;
-                continue;
-            }
+    /**
+     * Put the wildcard values of a resolved route into a bundle
+     */
+    private static void putWildcards(Route route, Bundle bundle) {
+        if (route.getArguments() != null) {
+            route.getArguments().writeTo(bundle);
+            return;
+        }
+        if (route.getWildcards() == null) {
+            return;
+        }
 
-            if (!mappedUri.getHost().equals(givenUri.getHost())) {
-                res = false;
-                continue;
+        Map<String, Comparable> wildcards = route.getWildcards();
+        for (Map.Entry<String, Comparable> entry : wildcards.entrySet()) {
+            if (entry.getValue() instanceof Integer) {
+                bundle.putInt(entry.getKey(), (Integer) entry.getValue());
+            } else if (entry.getValue() instanceof Long) {
+                bundle.putLong(entry.getKey(), (Long) entry.getValue());
+            } else {
+                bundle.putString(entry.getKey(), (String) entry.getValue());
             }
+        }
+    }
 
-            if (givenUri.getPathSegments().size() != mappedUri.getPathSegments().size()) {
-                res = false;
-                continue;
-            }
+    /**
+     * Match the given route against a set of mapped routes by scanning them in order.<br/>
+     * {@link Router#resolveRoute(String)} uses the compiled route index instead.
+     *
+     * @param givenRoute   The given route
+     * @param mappedRoutes The mapped routes to check
+     * @return The first matching route or null if none matches
+     */
+    public RouteMatch checkRouteKeys(String givenRoute, Set<String> mappedRoutes) {
+        String matchedRoute = null;
+        RouteUrl givenUrl = RouteUrl.parse(givenRoute, registry.isSlugStripping());
+        Map<String, Comparable> args = null;
 
-            for (int i = 0; i < mappedUri.getPathSegments().size(); i++) {
-                String regex;
-                String mappedSegment = mappedUri.getPathSegments().get(i);
-                String givenSegment = givenUri.getPathSegments().get(i);
-                if (mappedSegment.matches("i:\\{\\w+\\}")) {
-                    regex = "\\d+";
-                    if (!givenSegment.matches(regex)) {
-                        res = false;
-                        break;
-                    } else {
-                        Pattern keyPattern = Pattern.compile("i:\\{(\\w+)\\}");
-                        Pattern valuePattern = Pattern.compile("(\\d+)");
-                        Matcher keyMatcher = keyPattern.matcher(mappedSegment);
-                        Matcher valueMatcher = valuePattern.matcher(givenSegment);
-                        if (keyMatcher.find() && valueMatcher.find()) {
-                            args.put(keyMatcher.group(1), Integer.parseInt(valueMatcher.group(1)));
-                        }
-                    }
-                } else if (mappedSegment.matches("s:\\{\\w+\\}")) {
-                    regex = "[\\w+|\\.|\\-|_]+";
-                    if (!givenSegment.matches(regex)) {
-                        res = false;
-                        break;
-                    } else {
-                        Pattern keyPattern = Pattern.compile("s:\\{(\\w+)\\}");
-                        Pattern valuePattern = Pattern.compile("([\\w+|\\.|\\-|_]+)");
-                        Matcher keyMatcher = keyPattern.matcher(mappedSegment);
-                        Matcher valueMatcher = valuePattern.matcher(givenSegment);
-                        if (keyMatcher.find() && valueMatcher.find()) {
-                            args.put(keyMatcher.group(1), valueMatcher.group(1));
-                        }
-                    }
-                } else if (!mappedSegment.equals(givenSegment)) {
-                    res = false;
-                    break;
-                }
-            }
+        for (String mappedRoute : mappedRoutes) {
+            CompiledRoute compiled = registry.table().compiled(mappedRoute);
 
-            if (res) {
+            if (compiled.matches(givenUrl)) {
                 matchedRoute = mappedRoute;
+                args = compiled.extractWildcards(givenUrl);
                 break;
             }
         }
@@ -513,24 +1219,14 @@ public class Router {
         if (matchedRoute != null) {
             match = new RouteMatch();
             match.setMatchedRoute(matchedRoute);
-            if (!args.isEmpty()) {
-                match.setArguments(args);
-            }
+            match.setArguments(args);
         }
 
         return match;
     }
 
     public Map<String, String> extractRouteQueryParams(String givenRoute) {
-        Uri uri = Uri.parse(givenRoute);
-        Map<String, String> qp = new HashMap<>();
-
-        for (String key : uri.getQueryParameterNames()) {
-            String value = uri.getQueryParameter(key);
-            qp.put(key, value);
-        }
-
-        return qp;
+        return RouteUrl.parse(givenRoute, false).getQueryParams();
     }
 
     /**
@@ -539,66 +1235,213 @@ public class Router {
      * @return The route object be it Activity, Fragment or generic action
      */
     public Route resolveRoute(String givenRoute) {
-        //String givenRoute = "app://www.app.com/laws/13582/articles/article/22B?paragraph=4&bn=true";
-        RouteMatch match;
-        Route matchedRoute;
+        RouterMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return resolveRoute(givenRoute, null);
+        }
 
-        match = checkRouteKeys(givenRoute, activityRoutes.keySet());
+        long start = System.nanoTime();
+        ResolutionTrace trace = new ResolutionTrace();
+        Route route = resolveRoute(givenRoute, trace);
+        long duration = System.nanoTime() - start;
 
-        if (match == null) {
-            match = checkRouteKeys(givenRoute, fragmentRoutes.keySet());
-        } else {
-            matchedRoute = new ActivityRoute();
-            matchedRoute.setMappedRoute(match.getMatchedRoute());
-            matchedRoute.setCleanRoute(givenRoute);
-            matchedRoute.setWildcards(match.getArguments());
-            matchedRoute.setQueryParams(extractRouteQueryParams(givenRoute));
-            matchedRoute.setResult(activityRoutes.get(match.getMatchedRoute()));
+        metrics.onRouteResolved(givenRoute,
+                route != null ? route.getMappedRoute() : null,
+                route != null ? kindOf(route) : null,
+                duration, trace.candidatesExamined, trace.cacheHit);
+        return route;
+    }
 
-            return matchedRoute;
+    private Route resolveRoute(String givenRoute, ResolutionTrace trace) {
+        RouteTable table = registry.table();
+        ResolutionCache cache = registry.cache();
+        ResolutionCache.Resolution resolution;
+
+        if (cache != null) {
+            resolution = cache.get(givenRoute, table);
+            if (resolution != null) {
+                if (trace != null) {
+                    trace.cacheHit = true;
+                }
+                return newRoute(givenRoute, resolution.entry, resolution.arguments, resolution.queryParams);
+            }
         }
 
-        if (match == null) {
-            match = checkRouteKeys(givenRoute, actionRoutes.keySet());
-        } else {
-            matchedRoute = new FragmentRoute();
-            matchedRoute.setMappedRoute(match.getMatchedRoute());
-            matchedRoute.setCleanRoute(givenRoute);
-            matchedRoute.setWildcards(match.getArguments());
-            matchedRoute.setQueryParams(extractRouteQueryParams(givenRoute));
-            matchedRoute.setResult(fragmentRoutes.get(match.getMatchedRoute()));
+        RouteUrl givenUrl = RouteUrl.parse(givenRoute, registry.isSlugStripping());
+        RouteIndex.Entry entry = table.match(givenUrl, trace);
 
-            return matchedRoute;
+        if (entry == null) {
+            return null;
         }
 
-        if (match == null) {
-            return null;
-        } else {
-            matchedRoute = new ActionRoute();
-            matchedRoute.setMappedRoute(match.getMatchedRoute());
-            matchedRoute.setCleanRoute(givenRoute);
-            matchedRoute.setWildcards(match.getArguments());
-            matchedRoute.setQueryParams(extractRouteQueryParams(givenRoute));
-            matchedRoute.setResult(actionRoutes.get(match.getMatchedRoute()));
+        RouteArguments arguments = RouteArguments.extract(entry.route, givenUrl);
+        Map<String, String> queryParams = givenUrl.getQueryParams();
 
-            return matchedRoute;
+        if (cache != null) {
+            cache.put(givenRoute, new ResolutionCache.Resolution(table, entry, arguments, queryParams));
         }
+
+        return newRoute(givenRoute, entry, arguments, queryParams);
+    }
+
+    private Route newRoute(String givenRoute, RouteIndex.Entry entry,
+                           RouteArguments arguments, Map<String, String> queryParams) {
+        Route matchedRoute;
+
+        switch (entry.kind) {
+            case ACTIVITY:
+                matchedRoute = new ActivityRoute();
+                break;
+            case FRAGMENT:
+                matchedRoute = new FragmentRoute();
+                break;
+            default:
+                matchedRoute = new ActionRoute();
+                break;
+        }
+
+        matchedRoute.setMappedRoute(entry.route.getRoute());
+        matchedRoute.setCleanRoute(givenRoute);
+        matchedRoute.setArguments(arguments);
+        matchedRoute.setQueryParams(queryParams);
+        matchedRoute.setResult(entry.target);
+
+        return matchedRoute;
+    }
+
+    /**
+     * Resolve a route on the background executor, loading and initializing its routable class and
+     * decoding its query parameters, then deliver it on the main thread. The resolved route can then be
+     * executed with {@link #navigate(Route, Bundle, NavOptions)}.
+     *
+     * @param givenRoute The given route
+     * @param callback   Called with the resolved route, or with null if the route is not mapped or could not be resolved
+     */
+    public void resolveAsync(String givenRoute, ResolveCallback callback) {
+        backgroundResolver.resolveAsync(givenRoute, callback);
+    }
+
+    /**
+     * @see #prefetch(Collection)
+     */
+    public void prefetch(String givenRoute) {
+        backgroundResolver.prefetch(Collections.singletonList(givenRoute));
+    }
+
+    /**
+     * Resolve routes on the background executor and load and initialize their routable classes,
+     * e.g. for the routes the application is most likely to execute right after starting.<br/>
+     * Resolutions are kept only if the resolution cache is enabled (see {@link #setResolutionCacheSize(int)}),
+     * but class loading and the first use of the route index are paid in advance either way.
+     *
+     * @param givenRoutes The routes to prefetch
+     */
+    public void prefetch(Collection<String> givenRoutes) {
+        backgroundResolver.prefetch(givenRoutes);
+    }
+
+    /**
+     * {@link #prefetch(Collection) Prefetch} the given routes once the calling thread is idle,
+     * e.g. when called from <code>Application.onCreate</code>, once the application has started.
+     * Must be called from a thread with a looper.
+     *
+     * @param givenRoutes The routes to prefetch
+     */
+    public void prefetchWhenIdle(Collection<String> givenRoutes) {
+        backgroundResolver.prefetchWhenIdle(givenRoutes);
     }
 
     public boolean isValidRoute(String route) {
         return resolveRoute(route) != null;
     }
 
+    /**
+     * @return A copy of the mapped activity routes, in registration order
+     */
+    @SuppressWarnings("unchecked")
     public HashMap<String, Class<? extends Activity>> getActivityRoutes() {
-        return activityRoutes;
+        return (HashMap) registry.table().index().routes(RouteKind.ACTIVITY);
     }
 
+    /**
+     * @return A copy of the mapped fragment routes, in registration order
+     */
+    @SuppressWarnings("unchecked")
     public HashMap<String, Class<? extends Fragment>> getFragmentRoutes() {
-        return fragmentRoutes;
+        return (HashMap) registry.table().index().routes(RouteKind.FRAGMENT);
     }
 
+    /**
+     * @return A copy of the mapped action routes, in registration order
+     */
+    @SuppressWarnings("unchecked")
     public HashMap<String, RouterAction> getActionRoutes() {
-        return actionRoutes;
+        return (HashMap) registry.table().index().routes(RouteKind.ACTION);
+    }
+
+    /**
+     * Follows the state of the attached activity: defers navigations once it saved its state,
+     * executes them once it resumes, and lets go of it once it is destroyed
+     */
+    private final class HostCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        private final Application application;
+
+        HostCallbacks(Application application) {
+            this.application = application;
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            if (activity != getContext()) {
+                return;
+            }
+            FragmentManager fragmentManager = getFragmentManager();
+            if (fragmentManager != null) {
+                fragmentManager.removeOnBackStackChangedListener(backStackListener);
+            }
+            Router.this.fragmentManager = null;
+            /* Navigations wait for the next host until then */
+            hostDestroyed = true;
+
+            if (activity.isFinishing()) {
+                navigationHistory.clear();
+                fragmentPool.clear();
+                /* The next host attaches again, and a discarded scope is not kept by the application */
+                application.unregisterActivityLifecycleCallbacks(this);
+                hostCallbacks = null;
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            if (activity == getContext()) {
+                setHostStateSaved(false);
+            }
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            if (activity == getContext()) {
+                setHostStateSaved(true);
+            }
+        }
     }
 
     /**
@@ -623,6 +1466,34 @@ public class Router {
         }
     }
 
+    /**
+     * Instantiates the fragments of fragment routes
+     */
+    interface FragmentFactory {
+
+        FragmentFactory DEFAULT = new FragmentFactory() {
+            @Override
+            public Fragment instantiate(Context context, String className) {
+                return Fragment.instantiate(context, className);
+            }
+        };
+
+        Fragment instantiate(Context context, String className);
+    }
+
+    /**
+     * Receives the outcome of {@link #resolveAsync(String, ResolveCallback)}
+     */
+    public interface ResolveCallback {
+
+        /**
+         * @param givenRoute The given route
+         * @param route      The resolved route, ready for execution, or null if the given route is not mapped
+         *                   or its resolution failed
+         */
+        void onRouteResolved(String givenRoute, Route route);
+    }
+
     public static class RouteMatch {
         private String matchedRoute;
         private Map<String, Comparable> arguments;
@@ -0,0 +1,74 @@
+package com.sirios.androidurlrouter;
+
+import android.util.Log;
+
+/**
+ * Logging of the {@link Router}, gated by level.<br/>
+ * The router checks {@link #isLoggable(int)} before building any log message, so messages below
+ * the level cost nothing. Besides logcat messages, the logger keeps a {@link NavigationLog} of
+ * the most recent navigations, which is much cheaper than logging each of them.<br/>
+ * Override {@link #log(int, String)} to send the messages elsewhere than logcat.
+ *
+ * @author S1ri0S
+ */
+public class RouterLogger {
+
+    /**
+     * Level that disables all messages
+     */
+    public static final int SILENT = Log.ASSERT + 1;
+    public static final int DEFAULT_NAVIGATION_LOG_SIZE = 16;
+    private static final String LOG_TAG = "Router";
+
+    private volatile int level;
+    private final NavigationLog navigationLog;
+
+    /**
+     * A logger only logging warnings and errors, with a navigation log of {@link #DEFAULT_NAVIGATION_LOG_SIZE} entries
+     */
+    public RouterLogger() {
+        this(Log.WARN, DEFAULT_NAVIGATION_LOG_SIZE);
+    }
+
+    /**
+     * @param level             The lowest priority to log, one of the {@link Log} priorities or {@link #SILENT}
+     * @param navigationLogSize The number of navigations to keep, 0 to keep none
+     */
+    public RouterLogger(int level, int navigationLogSize) {
+        this.level = level;
+        this.navigationLog = navigationLogSize > 0 ? new NavigationLog(navigationLogSize) : null;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * @param priority One of the {@link Log} priorities
+     * @return true if messages of the given priority are logged
+     */
+    public final boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+
+    /**
+     * Log a message, which the router only does if {@link #isLoggable(int)} is true for its priority
+     *
+     * @param priority One of the {@link Log} priorities
+     * @param message  The message
+     */
+    public void log(int priority, String message) {
+        Log.println(priority, LOG_TAG, message);
+    }
+
+    /**
+     * @return The log of the most recent navigations, or null if it is disabled
+     */
+    public NavigationLog getNavigationLog() {
+        return navigationLog;
+    }
+}
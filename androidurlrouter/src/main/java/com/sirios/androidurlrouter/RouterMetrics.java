@@ -0,0 +1,46 @@
+package com.sirios.androidurlrouter;
+
+/**
+ * Receives timings and counters of the work done by the {@link Router}, e.g. to feed them to telemetry.<br/>
+ * Callbacks are invoked synchronously on the resolving or navigating thread, possibly from several
+ * threads at once, so implementations should be cheap and thread safe.
+ * Routers only measure anything when metrics are set (see {@link Router#setMetrics(RouterMetrics)}).
+ *
+ * @author S1ri0S
+ * @see HistogramRouterMetrics
+ */
+public interface RouterMetrics {
+
+    /**
+     * Called after a given route is resolved
+     *
+     * @param givenRoute         The given route
+     * @param mappedRoute        The matched mapped route, or null if the given route is not mapped
+     * @param kind               The kind of the matched route, or null if the given route is not mapped
+     * @param durationNanos      The time spent resolving the route
+     * @param candidatesExamined The number of route index nodes the given route was compared with, 0 for cache hits
+     * @param cacheHit           Whether the resolution was served by the resolution cache
+     */
+    void onRouteResolved(String givenRoute, String mappedRoute, RouteKind kind,
+                         long durationNanos, int candidatesExamined, boolean cacheHit);
+
+    /**
+     * Called after the {@link OnRouteChangeListener}s have been notified about a route execution
+     *
+     * @param givenRoute    The executed route
+     * @param mappedRoute   The matched mapped route, or null if the given route is not mapped
+     * @param durationNanos The time spent in the listeners, before and after the route change
+     */
+    void onListenersNotified(String givenRoute, String mappedRoute, long durationNanos);
+
+    /**
+     * Called after a route has been executed
+     *
+     * @param givenRoute    The executed route
+     * @param mappedRoute   The matched mapped route
+     * @param kind          The kind of the matched route
+     * @param durationNanos The time spent running the action, committing the fragment transaction
+     *                      or starting the activity, including the assembly of their arguments
+     */
+    void onRouteExecuted(String givenRoute, String mappedRoute, RouteKind kind, long durationNanos);
+}
@@ -0,0 +1,603 @@
+package com.sirios.androidurlrouter;
+
+import android.app.Fragment;
+import android.app.FragmentManager;
+import android.app.FragmentTransaction;
+import android.content.Context;
+import android.os.Bundle;
+import android.view.View;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Fragment manager keeping its fragments and back stack in memory, for tests running against the mockable android.jar.<br/>
+ * Like the framework's, it only runs committed transactions and pops the back stack once
+ * {@link #executePendingTransactions()} is called, and notifies its back stack listeners once per transaction
+ * added to the back stack. The fragments it instantiates as a {@link Router.FragmentFactory} are mocks
+ * whose tag, arguments and state follow the transactions.
+ */
+class FakeFragmentManager extends FragmentManager implements Router.FragmentFactory {
+
+    /* Fragments held by the manager, added or detached */
+    private final List<Fragment> active = new ArrayList<>();
+    /* Fragments added and not detached, in the order they were added */
+    private final List<Fragment> added = new ArrayList<>();
+    private final Map<Fragment, FragmentState> states = new IdentityHashMap<>();
+    private final List<Transaction> backStack = new ArrayList<>();
+    private final List<Runnable> pending = new ArrayList<>();
+    private final List<OnBackStackChangedListener> listeners = new ArrayList<>();
+    private int nextId;
+
+    @Override
+    public Fragment instantiate(Context context, String className) {
+        try {
+            FragmentState state = new FragmentState();
+            Fragment fragment = mock(Class.forName(className).asSubclass(Fragment.class), state);
+            states.put(fragment, state);
+            return fragment;
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * @return The fragment shown on top of the container, or null if none is
+     */
+    Fragment getVisibleFragment(int containerViewId) {
+        for (int i = added.size() - 1; i >= 0; i--) {
+            FragmentState state = states.get(added.get(i));
+            if (state.containerViewId == containerViewId && !state.hidden) {
+                return added.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The fragments of the container that are added and not detached, in the order they were added
+     */
+    List<Fragment> getAddedFragments(int containerViewId) {
+        List<Fragment> fragments = new ArrayList<>();
+        for (Fragment fragment : added) {
+            if (states.get(fragment).containerViewId == containerViewId) {
+                fragments.add(fragment);
+            }
+        }
+        return fragments;
+    }
+
+    boolean hasPendingTransactions() {
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public FragmentTransaction beginTransaction() {
+        return new Transaction();
+    }
+
+    @Override
+    public boolean executePendingTransactions() {
+        boolean executed = false;
+        while (!pending.isEmpty()) {
+            pending.remove(0).run();
+            executed = true;
+        }
+        return executed;
+    }
+
+    @Override
+    public Fragment findFragmentById(int id) {
+        for (int i = added.size() - 1; i >= 0; i--) {
+            if (states.get(added.get(i)).containerViewId == id) {
+                return added.get(i);
+            }
+        }
+        for (int i = active.size() - 1; i >= 0; i--) {
+            if (states.get(active.get(i)).containerViewId == id) {
+                return active.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Fragment findFragmentByTag(String tag) {
+        for (int i = added.size() - 1; i >= 0; i--) {
+            if (tag.equals(states.get(added.get(i)).tag)) {
+                return added.get(i);
+            }
+        }
+        for (int i = active.size() - 1; i >= 0; i--) {
+            if (tag.equals(states.get(active.get(i)).tag)) {
+                return active.get(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void popBackStack() {
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                popBackStackImmediate();
+            }
+        });
+    }
+
+    @Override
+    public boolean popBackStackImmediate() {
+        executePendingTransactions();
+        return pop(backStack.size() - 1);
+    }
+
+    @Override
+    public void popBackStack(final String name, final int flags) {
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                pop(name, -1, flags);
+            }
+        });
+    }
+
+    @Override
+    public boolean popBackStackImmediate(String name, int flags) {
+        executePendingTransactions();
+        return pop(name, -1, flags);
+    }
+
+    @Override
+    public void popBackStack(final int id, final int flags) {
+        pending.add(new Runnable() {
+            @Override
+            public void run() {
+                pop(null, id, flags);
+            }
+        });
+    }
+
+    @Override
+    public boolean popBackStackImmediate(int id, int flags) {
+        executePendingTransactions();
+        return pop(null, id, flags);
+    }
+
+    private boolean pop(String name, int id, int flags) {
+        for (int i = backStack.size() - 1; i >= 0; i--) {
+            Transaction transaction = backStack.get(i);
+            if (name != null ? name.equals(transaction.name) : transaction.id == id) {
+                return pop((flags & POP_BACK_STACK_INCLUSIVE) != 0 ? i : i + 1);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pop the back stack entries from the given position up
+     */
+    private boolean pop(int position) {
+        if (position < 0 || position >= backStack.size()) {
+            return false;
+        }
+        while (backStack.size() > position) {
+            backStack.remove(backStack.size() - 1).revert();
+        }
+        reportBackStackChanged();
+        return true;
+    }
+
+    private void reportBackStackChanged() {
+        for (OnBackStackChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onBackStackChanged();
+        }
+    }
+
+    @Override
+    public int getBackStackEntryCount() {
+        return backStack.size();
+    }
+
+    @Override
+    public BackStackEntry getBackStackEntryAt(int index) {
+        return backStack.get(index);
+    }
+
+    @Override
+    public void addOnBackStackChangedListener(OnBackStackChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeOnBackStackChangedListener(OnBackStackChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void putFragment(Bundle bundle, String key, Fragment fragment) {
+    }
+
+    @Override
+    public Fragment getFragment(Bundle bundle, String key) {
+        return null;
+    }
+
+    @Override
+    public Fragment.SavedState saveFragmentInstanceState(Fragment fragment) {
+        return null;
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return false;
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+    }
+
+    private void addFragment(Fragment fragment, int containerViewId, String tag) {
+        FragmentState state = states.get(fragment);
+        state.containerViewId = containerViewId;
+        if (tag != null) {
+            state.tag = tag;
+        }
+        if (!active.contains(fragment)) {
+            active.add(fragment);
+        }
+        if (!state.detached && !added.contains(fragment)) {
+            added.add(fragment);
+            state.added = true;
+        }
+    }
+
+    private void removeFragment(Fragment fragment) {
+        active.remove(fragment);
+        added.remove(fragment);
+        states.get(fragment).added = false;
+    }
+
+    private void detachFragment(Fragment fragment) {
+        FragmentState state = states.get(fragment);
+        state.detached = true;
+        state.added = false;
+        added.remove(fragment);
+    }
+
+    private void attachFragment(Fragment fragment) {
+        FragmentState state = states.get(fragment);
+        if (state.detached) {
+            state.detached = false;
+            state.added = true;
+            added.add(fragment);
+        }
+    }
+
+    /**
+     * State of a fragment mock, answering its getters
+     */
+    private static final class FragmentState implements Answer<Object> {
+        String tag;
+        int containerViewId;
+        Bundle arguments;
+        boolean added;
+        boolean detached;
+        boolean hidden;
+
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            switch (invocation.getMethod().getName()) {
+                case "getTag":
+                    return tag;
+                case "getId":
+                    return containerViewId;
+                case "getArguments":
+                    return arguments;
+                case "setArguments":
+                    arguments = (Bundle) invocation.getArguments()[0];
+                    return null;
+                case "isAdded":
+                    return added;
+                case "isDetached":
+                    return detached;
+                case "isHidden":
+                    return hidden;
+                default:
+                    return RETURNS_DEFAULTS.answer(invocation);
+            }
+        }
+    }
+
+    private static final class Op {
+        static final int ADD = 1;
+        static final int REPLACE = 2;
+        static final int REMOVE = 3;
+        static final int HIDE = 4;
+        static final int SHOW = 5;
+        static final int DETACH = 6;
+        static final int ATTACH = 7;
+
+        final int command;
+        final Fragment fragment;
+        final int containerViewId;
+        final String tag;
+        /* The fragments a replace removed, and whether it added its fragment */
+        final List<Fragment> removed = new ArrayList<>();
+        boolean addedFragment;
+
+        Op(int command, Fragment fragment, int containerViewId, String tag) {
+            this.command = command;
+            this.fragment = fragment;
+            this.containerViewId = containerViewId;
+            this.tag = tag;
+        }
+    }
+
+    private final class Transaction extends FragmentTransaction implements BackStackEntry {
+        private final List<Op> ops = new ArrayList<>();
+        private int id = -1;
+        private String name;
+        private boolean addToBackStack;
+        private boolean committed;
+
+        private FragmentTransaction op(int command, Fragment fragment, int containerViewId, String tag) {
+            ops.add(new Op(command, fragment, containerViewId, tag));
+            return this;
+        }
+
+        void run() {
+            for (Op op : ops) {
+                FragmentState state = states.get(op.fragment);
+                switch (op.command) {
+                    case Op.ADD:
+                        addFragment(op.fragment, op.containerViewId, op.tag);
+                        break;
+                    case Op.REPLACE:
+                        for (Fragment fragment : new ArrayList<>(added)) {
+                            if (fragment != op.fragment && states.get(fragment).containerViewId == op.containerViewId) {
+                                removeFragment(fragment);
+                                op.removed.add(fragment);
+                            }
+                        }
+                        op.addedFragment = !active.contains(op.fragment);
+                        addFragment(op.fragment, op.containerViewId, op.tag);
+                        break;
+                    case Op.REMOVE:
+                        removeFragment(op.fragment);
+                        break;
+                    case Op.HIDE:
+                        state.hidden = true;
+                        break;
+                    case Op.SHOW:
+                        state.hidden = false;
+                        break;
+                    case Op.DETACH:
+                        detachFragment(op.fragment);
+                        break;
+                    case Op.ATTACH:
+                        attachFragment(op.fragment);
+                        break;
+                }
+            }
+
+            if (addToBackStack) {
+                backStack.add(this);
+                reportBackStackChanged();
+            }
+        }
+
+        void revert() {
+            for (int i = ops.size() - 1; i >= 0; i--) {
+                Op op = ops.get(i);
+                FragmentState state = states.get(op.fragment);
+                switch (op.command) {
+                    case Op.ADD:
+                        removeFragment(op.fragment);
+                        break;
+                    case Op.REPLACE:
+                        if (op.addedFragment) {
+                            removeFragment(op.fragment);
+                        }
+                        for (Fragment fragment : op.removed) {
+                            addFragment(fragment, op.containerViewId, null);
+                        }
+                        break;
+                    case Op.REMOVE:
+                        addFragment(op.fragment, op.containerViewId, null);
+                        break;
+                    case Op.HIDE:
+                        state.hidden = false;
+                        break;
+                    case Op.SHOW:
+                        state.hidden = true;
+                        break;
+                    case Op.DETACH:
+                        attachFragment(op.fragment);
+                        break;
+                    case Op.ATTACH:
+                        detachFragment(op.fragment);
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public FragmentTransaction add(Fragment fragment, String tag) {
+            return op(Op.ADD, fragment, 0, tag);
+        }
+
+        @Override
+        public FragmentTransaction add(int containerViewId, Fragment fragment) {
+            return op(Op.ADD, fragment, containerViewId, null);
+        }
+
+        @Override
+        public FragmentTransaction add(int containerViewId, Fragment fragment, String tag) {
+            return op(Op.ADD, fragment, containerViewId, tag);
+        }
+
+        @Override
+        public FragmentTransaction replace(int containerViewId, Fragment fragment) {
+            return op(Op.REPLACE, fragment, containerViewId, null);
+        }
+
+        @Override
+        public FragmentTransaction replace(int containerViewId, Fragment fragment, String tag) {
+            return op(Op.REPLACE, fragment, containerViewId, tag);
+        }
+
+        @Override
+        public FragmentTransaction remove(Fragment fragment) {
+            return op(Op.REMOVE, fragment, states.get(fragment).containerViewId, null);
+        }
+
+        @Override
+        public FragmentTransaction hide(Fragment fragment) {
+            return op(Op.HIDE, fragment, 0, null);
+        }
+
+        @Override
+        public FragmentTransaction show(Fragment fragment) {
+            return op(Op.SHOW, fragment, 0, null);
+        }
+
+        @Override
+        public FragmentTransaction detach(Fragment fragment) {
+            return op(Op.DETACH, fragment, 0, null);
+        }
+
+        @Override
+        public FragmentTransaction attach(Fragment fragment) {
+            return op(Op.ATTACH, fragment, 0, null);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return ops.isEmpty();
+        }
+
+        @Override
+        public FragmentTransaction setCustomAnimations(int enter, int exit) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setCustomAnimations(int enter, int exit, int popEnter, int popExit) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setTransition(int transit) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction addSharedElement(View sharedElement, String name) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setTransitionStyle(int styleRes) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction addToBackStack(String name) {
+            this.name = name;
+            addToBackStack = true;
+            return this;
+        }
+
+        @Override
+        public boolean isAddToBackStackAllowed() {
+            return true;
+        }
+
+        @Override
+        public FragmentTransaction disallowAddToBackStack() {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setBreadCrumbTitle(int res) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setBreadCrumbTitle(CharSequence text) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setBreadCrumbShortTitle(int res) {
+            return this;
+        }
+
+        @Override
+        public FragmentTransaction setBreadCrumbShortTitle(CharSequence text) {
+            return this;
+        }
+
+        @Override
+        public int commit() {
+            if (committed) {
+                throw new IllegalStateException("commit already called");
+            }
+            committed = true;
+            id = addToBackStack ? nextId++ : -1;
+            pending.add(new Runnable() {
+                @Override
+                public void run() {
+                    Transaction.this.run();
+                }
+            });
+            return id;
+        }
+
+        @Override
+        public int commitAllowingStateLoss() {
+            return commit();
+        }
+
+        @Override
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getBreadCrumbTitleRes() {
+            return 0;
+        }
+
+        @Override
+        public int getBreadCrumbShortTitleRes() {
+            return 0;
+        }
+
+        @Override
+        public CharSequence getBreadCrumbTitle() {
+            return null;
+        }
+
+        @Override
+        public CharSequence getBreadCrumbShortTitle() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sirios.androidurlrouter;
+
+import android.app.Fragment;
+import android.app.FragmentTransaction;
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentPoolTest {
+
+    private static final String ROUTE = "app://www.app.com/laws/i:{lawId}";
+
+    private FakeFragmentManager fragmentManager;
+    private FragmentPool pool;
+
+    @Before
+    public void initPool() {
+        fragmentManager = new FakeFragmentManager();
+        pool = new FragmentPool(2);
+        pool.setReusable(ROUTE, true);
+    }
+
+    private Fragment add(String tag) {
+        Fragment fragment = fragmentManager.instantiate(null, RouterTest.MockFragment1.class.getName());
+        fragment.setArguments(new Bundle());
+        fragmentManager.beginTransaction().add(1, fragment, tag).commit();
+        fragmentManager.executePendingTransactions();
+        return fragment;
+    }
+
+    private void release(Fragment fragment) {
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        pool.release(fragmentManager, transaction, fragment);
+        transaction.commit();
+        fragmentManager.executePendingTransactions();
+    }
+
+    @Test
+    public void testAcquire() throws Exception {
+        assertNull(pool.acquire(fragmentManager, ROUTE + "#lawId=1"));
+        assertEquals(pool.getInstantiationCount(), 1);
+
+        Fragment fragment = add(ROUTE + "#lawId=1");
+        assertSame(pool.acquire(fragmentManager, ROUTE + "#lawId=1"), fragment);
+        assertEquals(pool.getReuseCount(), 1);
+
+        /* A fragment without arguments was not created by the router */
+        fragment.setArguments(null);
+        assertNull(pool.acquire(fragmentManager, ROUTE + "#lawId=1"));
+        assertEquals(pool.getInstantiationCount(), 2);
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        Fragment fragment = add(ROUTE + "#lawId=1");
+        release(fragment);
+
+        assertTrue(fragment.isDetached());
+        assertEquals(pool.size(), 1);
+        assertTrue(fragmentManager.getAddedFragments(1).isEmpty());
+
+        /* Acquiring a detached fragment takes it out of the pool */
+        assertSame(pool.acquire(fragmentManager, ROUTE + "#lawId=1"), fragment);
+        assertEquals(pool.size(), 0);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Fragment first = add(ROUTE + "#lawId=1");
+        Fragment second = add(ROUTE + "#lawId=2");
+        Fragment third = add(ROUTE + "#lawId=3");
+
+        release(first);
+        release(second);
+        assertEquals(pool.getEvictionCount(), 0);
+
+        /* The least recently detached fragment is removed */
+        release(third);
+        assertEquals(pool.size(), 2);
+        assertEquals(pool.getEvictionCount(), 1);
+        assertNull(fragmentManager.findFragmentByTag(ROUTE + "#lawId=1"));
+        assertSame(fragmentManager.findFragmentByTag(ROUTE + "#lawId=2"), second);
+        assertSame(fragmentManager.findFragmentByTag(ROUTE + "#lawId=3"), third);
+
+        /* Shrunk, the pool removes its detached fragments, including the one just released */
+        pool.setMaxSize(0);
+        Fragment fourth = add(ROUTE + "#lawId=4");
+        release(fourth);
+        assertEquals(pool.size(), 0);
+        assertEquals(pool.getEvictionCount(), 4);
+        assertNull(fragmentManager.findFragmentByTag(ROUTE + "#lawId=2"));
+        assertNull(fragmentManager.findFragmentByTag(ROUTE + "#lawId=4"));
+        assertFalse(fragmentManager.getAddedFragments(1).contains(fourth));
+    }
+}
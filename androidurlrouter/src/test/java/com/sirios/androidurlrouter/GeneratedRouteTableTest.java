@@ -0,0 +1,139 @@
+package com.sirios.androidurlrouter;
+
+import com.sirios.androidurlrouter.compiler.RouteProcessor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles annotated classes with the {@link RouteProcessor} and registers the generated table with a router
+ */
+public class GeneratedRouteTableTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("routes", "");
+        directory.delete();
+        assertTrue(directory.mkdirs());
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private File write(String name, String... lines) throws Exception {
+        File file = new File(directory, "src/generated/" + name + ".java");
+        file.getParentFile().mkdirs();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testGeneratedRoutesRegister() throws Exception {
+        List<File> sources = new ArrayList<>();
+        sources.add(write("LawFragment",
+                "package generated;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route({\"app://www.app.com/laws/i:{lawId}/articles/i:{articleId}\", \"app://www.app.com/laws/i:{lawId}\"})",
+                "public class LawFragment extends android.app.Fragment {",
+                "}"));
+        sources.add(write("NewsAction",
+                "package generated;",
+                "import com.sirios.androidurlrouter.annotation.Route;",
+                "@Route(\"app://www.app.com/news/i:{newsId}/{slug?}\")",
+                "public class NewsAction extends com.sirios.androidurlrouter.RouterAction {",
+                "    @Override",
+                "    public void doAction(android.content.Context context, com.sirios.androidurlrouter.Route route) {",
+                "    }",
+                "}"));
+
+        File classes = new File(directory, "classes");
+        File generated = new File(directory, "generated");
+        assertTrue(classes.mkdirs() && generated.mkdirs());
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-d", classes.getPath(), "-s", generated.getPath(),
+                            "-classpath", System.getProperty("java.class.path")),
+                    null, fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new RouteProcessor()));
+            assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        } finally {
+            fileManager.close();
+        }
+
+        ClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+        RouteTable.Builder routes = (RouteTable.Builder) loader.loadClass("generated.GeneratedRouteTable")
+                .getMethod("routes").invoke(null);
+
+        RouteTable table = routes.build();
+        assertEquals(table.size(), 3);
+
+        Router router = new Router().registerAll(table);
+
+        Route route = router.resolveRoute("app://www.app.com/laws/12/articles/3?q=1");
+        assertEquals(route.getResult(), loader.loadClass("generated.LawFragment"));
+        assertEquals(route.getMappedRoute(), "app://www.app.com/laws/i:{lawId}/articles/i:{articleId}");
+        assertEquals(route.getWildcards().get("articleId"), 3);
+        assertEquals(route.getQueryParams().get("q"), "1");
+
+        route = router.resolveRoute("app://www.app.com/laws/12");
+        assertEquals(route.getResult(), loader.loadClass("generated.LawFragment"));
+        assertEquals(route.getWildcards().get("lawId"), 12);
+
+        route = router.resolveRoute("app://www.app.com/news/4/big-news");
+        assertTrue(loader.loadClass("generated.NewsAction").isInstance(route.getResult()));
+        assertEquals(route.getWildcards().get("slug"), "big-news");
+        assertTrue(loader.loadClass("generated.NewsAction").isInstance(
+                router.resolveRoute("app://www.app.com/news/4").getResult()));
+
+        assertNull(router.resolveRoute("app://www.app.com/laws/abc"));
+    }
+}
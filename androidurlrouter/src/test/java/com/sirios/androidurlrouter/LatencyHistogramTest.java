@@ -0,0 +1,41 @@
+package com.sirios.androidurlrouter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() throws Exception {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE};
+
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            assertTrue(index == 0 || value > LatencyHistogram.bucketUpperBound(index - 1));
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(histogram.getCount(), 1000);
+        assertEquals(histogram.getMaxNanos(), 1000000);
+        assertEquals(histogram.getMeanNanos(), 500500);
+        assertWithin(histogram.getP50(), 500000);
+        assertWithin(histogram.getP95(), 950000);
+        assertWithin(histogram.getP99(), 990000);
+        assertEquals(histogram.getPercentile(100), 1000000);
+        assertEquals(new LatencyHistogram().getP99(), 0);
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertTrue(actual + " is not close to " + expected, actual >= expected && actual <= expected * 1.125);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sirios.androidurlrouter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NavOptionsTest {
+
+    @Test
+    public void testCombinedFlags() throws Exception {
+        NavOptions options = NavOptions.of(NavOptions.REPLACE_FRAGMENT).with(NavOptions.ADD_TO_BACKSTACK);
+
+        assertTrue(options.has(NavOptions.REPLACE_FRAGMENT));
+        assertTrue(options.has(NavOptions.ADD_TO_BACKSTACK | NavOptions.REPLACE_FRAGMENT));
+        assertFalse(options.has(NavOptions.POP_CURRENT_FRAGMENT));
+        assertSame(options, NavOptions.of(NavOptions.ADD_TO_BACKSTACK | NavOptions.REPLACE_FRAGMENT));
+    }
+
+    @Test
+    public void testLegacyFlags() throws Exception {
+        assertSame(NavOptions.fromLegacyFlags(), NavOptions.NONE);
+        assertSame(NavOptions.fromLegacyFlags(Router.FLAG_OVERRIDE_SAME_ROUTE, Router.FLAG_POP_CURRENT_FRAGMENT, 42),
+                NavOptions.of(NavOptions.OVERRIDE_SAME_ROUTE | NavOptions.POP_CURRENT_FRAGMENT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLegacyFlagsAreRejected() throws Exception {
+        NavOptions.of(Router.FLAG_ADD_TO_BACKSTACK);
+    }
+}
@@ -0,0 +1,122 @@
+package com.sirios.androidurlrouter;
+
+import android.app.Fragment;
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RouteSnapshotTest {
+
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("routes", ".snapshot");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    private final SnapshotAction filesAction = new SnapshotAction("files");
+
+    private RouteTable.Builder routes() {
+        return RouteTable.builder()
+                .addActionRoute("app://www.app.com/files/i:{fileId}", filesAction)
+                .addFragmentRoute("app://www.app.com/laws/i:{lawId}/articles/i:{articleId}", SnapshotFragment.class)
+                .addFragmentRoute("app://www.app.com/laws/notes/s:{noteNumber}", SnapshotFragment.class)
+                .addActionRoute("app://www.app.com/news/i:{newsId}/{slug?}", new SnapshotAction("news"))
+                .addActionRoute("https://*.app.com/promo/s:{code}", new SnapshotAction("promo"));
+    }
+
+    @Test
+    public void testLoadOrBuild() throws Exception {
+        RouteTable built = RouteSnapshot.loadOrBuild(file, routes());
+        assertTrue(file.isFile());
+
+        RouteTable loaded = RouteSnapshot.loadOrBuild(file, routes());
+        assertTrue(loaded != built);
+        assertEquals(loaded.size(), built.size());
+
+        Router router = new Router().registerAll(loaded);
+        Route route = router.resolveRoute("app://www.app.com/laws/12/articles/3?q=1");
+        assertEquals(route.getResult(), SnapshotFragment.class);
+        assertEquals(route.getWildcards().get("articleId"), 3);
+        assertEquals(route.getQueryParams().get("q"), "1");
+
+        /* Actions are the registered instances, not new ones */
+        assertSame(router.resolveRoute("app://www.app.com/files/3").getResult(), filesAction);
+        assertEquals(router.resolveRoute("app://www.app.com/laws/notes/b12").getMappedRoute(),
+                "app://www.app.com/laws/notes/s:{noteNumber}");
+        assertEquals(router.resolveRoute("app://www.app.com/news/4/big-news").getWildcards().get("slug"), "big-news");
+        assertEquals(router.resolveRoute("app://www.app.com/news/4").getMappedRoute(),
+                "app://www.app.com/news/i:{newsId}/{slug?}");
+        assertEquals(router.resolveRoute("https://m.app.com/promo/summer").getMappedRoute(),
+                "https://*.app.com/promo/s:{code}");
+        assertNull(router.resolveRoute("app://www.app.com/laws/notes"));
+        assertNull(router.resolveRoute("app://www.other.com/files/3"));
+
+        /* Registering more routes builds the regular index out of the snapshot */
+        router.registerActionRoute("app://www.app.com/settings", new SnapshotAction("settings"));
+        assertEquals(router.getRouteTable().size(), built.size() + 1);
+        assertEquals(router.getFragmentRoutes().size(), 2);
+    }
+
+    @Test
+    public void testStaleOrCorruptSnapshots() throws Exception {
+        RouteSnapshot.write(routes().build(), file, routes().fingerprint());
+        assertNotNull(RouteSnapshot.load(file, routes()));
+
+        RouteTable.Builder changed = routes().addActionRoute("app://www.app.com/settings", new SnapshotAction("settings"));
+        assertTrue(changed.fingerprint() != routes().fingerprint());
+        assertNull(RouteSnapshot.load(file, changed));
+
+        /* Action routes cannot be loaded without their actions */
+        assertNull(RouteSnapshot.load(file, routes().fingerprint()));
+
+        RouteSnapshot.write(RouteTable.builder()
+                .addFragmentRoute("app://www.app.com/laws/i:{lawId}", SnapshotFragment.class).build(), file, 1);
+        assertNotNull(RouteSnapshot.load(file, 1));
+        assertNull(RouteSnapshot.load(file, 2));
+
+        RandomAccessFile snapshot = new RandomAccessFile(file, "rw");
+        try {
+            snapshot.seek(snapshot.length() - 1);
+            int last = snapshot.read();
+            snapshot.seek(snapshot.length() - 1);
+            snapshot.write(last ^ 1);
+        } finally {
+            snapshot.close();
+        }
+        assertNull(RouteSnapshot.load(file, 1));
+    }
+
+    public static class SnapshotAction extends RouterAction {
+        private final String name;
+
+        SnapshotAction(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void doAction(Context context, Route route) {
+            // NOTHING
+        }
+    }
+
+    public static class SnapshotFragment extends Fragment {
+    }
+}
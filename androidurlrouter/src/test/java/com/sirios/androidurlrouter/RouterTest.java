@@ -1,8 +1,11 @@
 package com.sirios.androidurlrouter;
 
 import android.app.Activity;
+import android.app.Application;
 import android.app.Fragment;
 import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
@@ -11,13 +14,30 @@ import org.junit.Test;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * To work on unit tests, switch the Test Artifact in the Build Variants view.
@@ -51,6 +71,7 @@ public class RouterTest {
 
     @Test
     public void testFragmentRoute() throws Exception {
+        router.setSlugStripping(true);
         Router.RouteMatch routeMatch = router
                 .checkRouteKeys("app://www.app.com/laws/1981/articles/14563/lala-lala-la?order=desc&bn=false",
                         router.getFragmentRoutes().keySet());
@@ -116,6 +137,112 @@ public class RouterTest {
         assertTrue(route.getWildcards().containsKey("noteNumber"));
     }
     
+    @Test
+    public void testRouteKindPrecedence() throws Exception {
+        router.registerFragmentRoute("app://www.app.com/books/i:{bookId}", MockFragment1.class);
+        router.registerActivityRoute("app://www.app.com/books/s:{bookName}", MockActivity1.class);
+        router.registerFragmentRoute("app://www.app.com/books/featured", MockFragment3.class);
+
+        assertEquals(router.resolveRoute("app://www.app.com/books/42").getResult(), MockActivity1.class);
+        assertEquals(router.resolveRoute("app://www.app.com/books/featured").getResult(), MockActivity1.class);
+        assertEquals(router.resolveRoute("app://www.app.com/books/42").getMappedRoute(), "app://www.app.com/books/s:{bookName}");
+    }
+
+    @Test
+    public void testResolutionCache() throws Exception {
+        router.setResolutionCacheSize(2);
+        ResolutionCache cache = router.getResolutionCache();
+
+        Route first = router.resolveRoute("app://www.app.com/articles/13746/related?page=1");
+        Route second = router.resolveRoute("app://www.app.com/articles/13746/related?page=1");
+
+        assertTrue(first != second);
+        assertEquals(second.getResult(), MockActivity1.class);
+        assertEquals(second.getWildcards().get("articleId"), 13746);
+        assertEquals(second.getQueryParams().get("page"), "1");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        router.resolveRoute("app://www.app.com/files/1843");
+        router.resolveRoute("app://www.app.com/webview");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        router.registerFragmentRoute("app://www.app.com/files/i:{fileId}/preview", MockFragment3.class);
+        assertEquals(0, cache.size());
+
+        router.setResolutionCacheSize(0);
+    }
+
+    @Test
+    public void testResolutionCacheEviction() throws Exception {
+        router.setResolutionCacheSize(2);
+        ResolutionCache cache = router.getResolutionCache();
+
+        router.resolveRoute("app://www.app.com/files/1");
+        router.resolveRoute("app://www.app.com/files/2");
+        router.resolveRoute("app://www.app.com/files/1");
+        router.resolveRoute("app://www.app.com/files/3");
+        assertEquals(cache.getEvictionCount(), 1);
+
+        /* files/2 was the least recently used */
+        router.resolveRoute("app://www.app.com/files/1");
+        router.resolveRoute("app://www.app.com/files/3");
+        assertEquals(cache.getHitCount(), 3);
+        router.resolveRoute("app://www.app.com/files/2");
+        assertEquals(cache.getHitCount(), 3);
+
+        final ResolutionCache concurrentCache = router.setResolutionCacheSize(16).getResolutionCache();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 1000;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        router.resolveRoute("app://www.app.com/files/" + (offset + i));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(concurrentCache.size(), 16);
+        assertEquals(concurrentCache.getEvictionCount(), 4000 - 16);
+
+        router.setResolutionCacheSize(0);
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+        final int routes = 500;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread registrar = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < routes; i++) {
+                        router.registerFragmentRoute("app://www.app.com/module" + i + "/i:{itemId}", MockFragment1.class);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+
+        registrar.start();
+        while (registrar.isAlive()) {
+            assertEquals(router.resolveRoute("app://www.app.com/files/1843").getResult().getClass(), MockAction1.class);
+            router.isValidRoute("app://www.app.com/module250/1");
+        }
+        registrar.join();
+
+        assertNull(failure.get());
+        assertEquals(router.resolveRoute("app://www.app.com/module499/7").getWildcards().get("itemId"), 7);
+    }
+
     @Test
     public void testNullRoute() throws Exception {
         Route route = router.resolveRoute("app://www.app.com/articles/article/19541");
@@ -123,6 +250,12 @@ public class RouterTest {
         assertNull(route);
     }
 
+    @Test
+    public void testRouteWithoutPath() throws Exception {
+        assertNull(router.resolveRoute("app://www.app.com?page=1"));
+        assertNull(router.resolveRoute("app:/webview"));
+    }
+
     @Test
     public void testDifferentScheme() throws Exception {
         Route route = router.resolveRoute("wrong://www.app.com/webview?url=http%3A%2F%2Fwww.app.com%2Fanalysis");
@@ -150,11 +283,13 @@ public class RouterTest {
 
     @Test(expected = IllegalStateException.class)
     public void testExecRoute() throws Exception {
+        router.setSlugStripping(true);
         router.execRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la?order=desc&bn=false");
     }
 
     @Test
     public void checkValidRoute() throws Exception {
+        router.setSlugStripping(true);
         assertTrue(router.isValidRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la?order=desc&bn=false"));
         assertTrue(router.isValidRoute("app://www.app.com/articles/13746/related?page=1"));
     }
@@ -174,6 +309,894 @@ public class RouterTest {
         router.registerFragmentRoute("app://www.app.com/profile/settings/me/s:{slug}", MockFragment3.class);
     }
 
+    @Test
+    public void checkAmbiguousRouteException() throws Exception {
+        try {
+            router.registerActionRoute("app://www.app.com/laws/i:{id}/articles/i:{articleNumber}", new MockAction1());
+            fail();
+        } catch (Router.DuplicateRouteException e) {
+            assertTrue(e.getMessage().contains("app://www.app.com/laws/i:{lawId}/articles/i:{articleId}"));
+            assertTrue(e.getMessage().contains("MockFragment1"));
+        }
+    }
+
+    @Test
+    public void testRegisterAll() throws Exception {
+        RouteTable.Builder lawsModule = RouteTable.builder()
+                .addFragmentRoute("app://www.app.com/codes/i:{codeId}", MockFragment3.class)
+                .addActionRoute("app://www.app.com/codes/i:{codeId}/share", new MockAction1());
+        RouteTable profileModule = RouteTable.builder()
+                .addActivityRoute("app://www.app.com/profile/edit", MockActivity1.class)
+                .build();
+
+        router.registerAll(RouteTable.builder().addAll(lawsModule).addAll(profileModule));
+
+        assertEquals(router.resolveRoute("app://www.app.com/codes/5").getResult(), MockFragment3.class);
+        assertTrue(router.resolveRoute("app://www.app.com/codes/5/share").getResult() instanceof MockAction1);
+        assertEquals(router.resolveRoute("app://www.app.com/profile/edit").getResult(), MockActivity1.class);
+        assertEquals(router.getRouteTable().size(), 13);
+    }
+
+    @Test
+    public void testRegisterAllIsAtomic() throws Exception {
+        RouteTable.Builder routes = RouteTable.builder()
+                .addFragmentRoute("app://www.app.com/codes/i:{codeId}", MockFragment3.class)
+                .addFragmentRoute("app://www.app.com/webview", MockFragment3.class);
+
+        try {
+            router.registerAll(routes);
+            fail();
+        } catch (Router.DuplicateRouteException e) {
+            assertNull(router.resolveRoute("app://www.app.com/codes/5"));
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        HistogramRouterMetrics metrics = new HistogramRouterMetrics();
+        router.setMetrics(metrics).setResolutionCacheSize(8).setSlugStripping(true);
+        router.addOnRouteChangeListener(new MockListener());
+
+        try {
+            router.resolveRoute("app://www.app.com/laws/1981/articles/14563");
+            router.resolveRoute("app://www.app.com/laws/1981/articles/14563");
+            router.resolveRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la");
+            router.resolveRoute("app://www.app.com/articles/article/19541");
+            router.execRoute("app://www.app.com/profile/settings/me/foobar");
+        } finally {
+            router.setMetrics(null).setResolutionCacheSize(0);
+        }
+
+        HistogramRouterMetrics.RouteStats law = metrics.getRouteStats("app://www.app.com/laws/i:{lawId}/articles/i:{articleId}");
+        assertEquals(law.getKind(), RouteKind.FRAGMENT);
+        assertEquals(law.getResolution().getCount(), 3);
+        assertEquals(law.getCacheHits(), 1);
+        assertEquals(law.getCacheMisses(), 2);
+        assertTrue(law.getCandidatesExamined() >= 8);
+        assertEquals(law.getExecution().getCount(), 0);
+
+        HistogramRouterMetrics.RouteStats action = metrics.getRouteStats("app://www.app.com/profile/settings/me/s:{slug}");
+        assertEquals(action.getKind(), RouteKind.ACTION);
+        assertEquals(action.getExecution().getCount(), 1);
+        assertEquals(action.getListeners().getCount(), 1);
+
+        HistogramRouterMetrics.RouteStats unmatched = metrics.getRouteStats(HistogramRouterMetrics.UNMATCHED);
+        assertNull(unmatched.getKind());
+        assertEquals(unmatched.getResolution().getCount(), 1);
+    }
+
+    @Test
+    public void testLoggerLevelAndNavigationLog() throws Exception {
+        final List<String> messages = new ArrayList<>();
+        router.setLogger(new RouterLogger(Log.INFO, 2) {
+            @Override
+            public void log(int priority, String message) {
+                messages.add(message);
+            }
+        });
+
+        try {
+            router.execRoute("app://www.app.com/profile/settings/me/foobar");
+            router.execRoute("app://www.app.com/files/1843");
+            router.execRoute("app://www.app.com/unknown");
+            fail();
+        } catch (Router.RouteNotFoundException e) {
+            NavigationLog navigationLog = router.getLogger().getNavigationLog();
+            List<NavigationLog.Entry> entries = navigationLog.getEntries();
+
+            assertTrue(messages.isEmpty());
+            assertEquals(entries.size(), 2);
+            assertEquals(entries.get(0).getRoute(), "app://www.app.com/files/1843");
+            assertEquals(entries.get(0).getMappedRoute(), "app://www.app.com/files/i:{fileId}");
+            assertEquals(entries.get(0).getKind(), RouteKind.ACTION);
+            assertNull(entries.get(1).getMappedRoute());
+            assertTrue(navigationLog.dump().contains("app://www.app.com/unknown -> not mapped"));
+        } finally {
+            router.setLogger(new RouterLogger());
+        }
+    }
+
+    @Test
+    public void testOverrideSameRoute() throws Exception {
+        NavigationLog navigationLog = router.getLogger().getNavigationLog();
+        navigationLog.clear();
+
+        router.execRoute("app://www.app.com/files/1843");
+        router.execRoute("app://www.app.com/files/1843");
+        assertEquals(navigationLog.getEntries().size(), 1);
+
+        router.navigate("app://www.app.com/files/1843", NavOptions.of(NavOptions.OVERRIDE_SAME_ROUTE));
+        router.execRoute("app://www.app.com/files/1843", Router.FLAG_OVERRIDE_SAME_ROUTE);
+        assertEquals(navigationLog.getEntries().size(), 3);
+
+        /* Null flags still bind to the legacy overloads */
+        router.execRoute("app://www.app.com/files/1844", null);
+        router.execRoute("app://www.app.com/files/1845", null, null);
+        assertEquals(navigationLog.getEntries().size(), 5);
+    }
+
+    @Test
+    public void testTypedArguments() throws Exception {
+        Route route = router.resolveRoute("app://www.app.com/laws/notes/article/30000000000/b12?x=1");
+        RouteArguments arguments = route.getArguments();
+        Bundle bundle = new Bundle();
+        arguments.writeTo(bundle);
+
+        assertEquals(arguments.size(), 2);
+        assertEquals(arguments.getName(0), "articleRevisionId");
+        assertEquals(arguments.getType(0), RouteArguments.TYPE_LONG);
+        assertEquals(arguments.getLong(0), 30000000000L);
+        assertEquals(arguments.getType(1), RouteArguments.TYPE_STRING);
+        assertEquals(bundle.getLong("articleRevisionId"), 30000000000L);
+        assertEquals(bundle.getString("noteNumber"), "b12");
+        assertEquals(route.getWildcards().get("articleRevisionId"), 30000000000L);
+
+        bundle = new Bundle();
+        router.resolveRoute("app://www.app.com/files/1843").getArguments().writeTo(bundle);
+        assertEquals(bundle.getInt("fileId"), 1843);
+    }
+
+    @Test
+    public void testQueryParamValues() throws Exception {
+        Route route = router.resolveRoute("app://www.app.com/webview?utm_source=a&tab=1&tab=2");
+
+        assertEquals(route.getQueryParamValues("tab").size(), 2);
+        assertEquals(route.getQueryParamValues("tab").get(1), "2");
+        assertEquals(route.getQueryParams().get("tab"), "1");
+        assertTrue(route.getQueryParamValues("page").isEmpty());
+    }
+
+    @Test
+    public void testQueryParamsArguments() throws Exception {
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+
+        /* Repeated parameters keep every value */
+        Bundle queryParams = router.assembleFragment(router.resolveRoute("app://www.app.com/webview?tab=1&page=3&tab=2"))
+                .getArguments().getBundle(Router.ROUTE_QUERY_PARAMS);
+        assertEquals(queryParams.getStringArrayList("tab"), Arrays.asList("1", "2"));
+        assertEquals(queryParams.getString("page"), "3");
+
+        /* Without query parameters there is no bundle to read */
+        assertNull(router.assembleFragment(router.resolveRoute("app://www.app.com/webview"))
+                .getArguments().getBundle(Router.ROUTE_QUERY_PARAMS));
+        assertNull(router.assembleFragment(router.resolveRoute("app://www.app.com/webview?"))
+                .getArguments().getBundle(Router.ROUTE_QUERY_PARAMS));
+
+        MockAction1 action = new MockAction1();
+        router.registerActionRoute("app://www.app.com/share/s:{text}", action);
+        router.execRoute("app://www.app.com/share/hello?to=a&to=b");
+        assertEquals(action.getRouteArguments().getBundle(Router.ROUTE_QUERY_PARAMS).getStringArrayList("to"),
+                Arrays.asList("a", "b"));
+
+        router.execRoute("app://www.app.com/share/hello");
+        assertNull(action.getRouteArguments().getBundle(Router.ROUTE_QUERY_PARAMS));
+    }
+
+    @Test
+    public void testResolveAsync() throws Exception {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        final AtomicReference<Route> resolved = new AtomicReference<>();
+        router.setBackgroundExecutor(direct).setCallbackExecutor(direct).setResolutionCacheSize(8);
+
+        try {
+            router.resolveAsync("app://www.app.com/files/27", new Router.ResolveCallback() {
+                @Override
+                public void onRouteResolved(String givenRoute, Route route) {
+                    resolved.set(route);
+                }
+            });
+            router.prefetch(Arrays.asList("app://www.app.com/profile/settings/me/foo", "app://www.app.com/unknown"));
+
+            assertTrue(resolved.get().getResult() instanceof MockAction1);
+            assertEquals(router.getResolutionCache().size(), 2);
+
+            router.navigate(resolved.get(), null, null);
+            assertEquals(router.getCurrentRoute(), "app://www.app.com/files/27");
+
+            /* A failed resolution is still delivered */
+            final AtomicInteger callbacks = new AtomicInteger();
+            router.setMetrics(new HistogramRouterMetrics() {
+                @Override
+                public void onRouteResolved(String givenRoute, String mappedRoute, RouteKind kind,
+                                            long durationNanos, int candidatesExamined, boolean cacheHit) {
+                    throw new IllegalStateException("Metrics failure");
+                }
+            });
+            router.resolveAsync("app://www.app.com/files/28", new Router.ResolveCallback() {
+                @Override
+                public void onRouteResolved(String givenRoute, Route route) {
+                    resolved.set(route);
+                    callbacks.incrementAndGet();
+                }
+            });
+            assertEquals(callbacks.get(), 1);
+            assertNull(resolved.get());
+        } finally {
+            router.setMetrics(null);
+            router.setBackgroundExecutor(null).setCallbackExecutor(null).setResolutionCacheSize(0);
+        }
+    }
+
+    @Test
+    public void testNavigationCoalescing() throws Exception {
+        final List<Runnable> windows = new ArrayList<>();
+        NavigationQueue queue = new NavigationQueue(router, 300, new NavigationQueue.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                windows.add(task);
+            }
+        });
+        NavigationLog navigationLog = router.getLogger().getNavigationLog();
+        navigationLog.clear();
+        router.setNavigationQueue(queue);
+
+        try {
+            router.execRoute("app://www.app.com/files/1");
+            router.execRoute("app://www.app.com/files/1");
+            router.execRoute("app://www.app.com/profile/settings/me/foo");
+            router.execRoute("app://www.app.com/files/2");
+            assertEquals(windows.size(), 1);
+            assertTrue(navigationLog.getEntries().isEmpty());
+
+            try {
+                router.execRoute("app://www.app.com/unknown");
+                fail();
+            } catch (Router.RouteNotFoundException e) {
+                assertTrue(queue.hasPending());
+            }
+
+            windows.get(0).run();
+            assertEquals(navigationLog.getEntries().size(), 2);
+            assertEquals(navigationLog.getEntries().get(1).getRoute(), "app://www.app.com/files/2");
+            assertEquals(queue.getCoalescedCount(), 1);
+            assertEquals(queue.getDroppedCount(), 2);
+            assertEquals(queue.getExecutedCount(), 1);
+
+            router.execRoute("app://www.app.com/files/3");
+            queue.flush();
+            windows.get(1).run();
+            assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+            assertEquals(queue.getExecutedCount(), 2);
+        } finally {
+            router.setNavigationQueue(null);
+        }
+    }
+
+    @Test
+    public void testExecRoutes() throws Exception {
+        final List<String> notifiedRoutes = new ArrayList<>();
+        OnRouteChangeListener listener = new OnRouteChangeListener() {
+            @Override
+            public void onBeforeRouteChange(String route) {
+                notifiedRoutes.add(route);
+            }
+
+            @Override
+            public void onAfterRouteChange(String route) {
+                notifiedRoutes.add(route);
+            }
+        };
+        router.addOnRouteChangeListener(listener);
+        Router.currentRoute = null;
+
+        try {
+            try {
+                router.execRoutes(Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/unknown"), null);
+                fail();
+            } catch (Router.RouteNotFoundException e) {
+                assertTrue(notifiedRoutes.isEmpty());
+            }
+
+            try {
+                router.execRoutes(Arrays.asList("app://www.app.com/files/1", "app://www.app.com/files/2"), null);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(notifiedRoutes.isEmpty());
+            }
+            assertNull(Router.currentRoute);
+
+            router.execRoutes(Arrays.asList("app://www.app.com/files/3"), NavOptions.NONE);
+            assertEquals(notifiedRoutes, Arrays.asList("app://www.app.com/files/3", "app://www.app.com/files/3"));
+            assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+        } finally {
+            router.removeOnRouteChangeListener(listener);
+        }
+    }
+
+    @Test
+    public void testExecRoutesCommitsFragments() throws Exception {
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+        router.setFragmentManager(fragmentManager).setFragmentContainerView(1);
+        List<String> routes = Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/pdfViewer/a.pdf",
+                "app://www.app.com/webview");
+        Bundle args = new Bundle();
+        args.putString("source", "push");
+
+        /* Without the back stack, the whole stack is a single transaction */
+        router.execRoutes(routes, args, null);
+        assertTrue(fragmentManager.hasPendingTransactions());
+        fragmentManager.executePendingTransactions();
+
+        List<Fragment> fragments = fragmentManager.getAddedFragments(1);
+        assertEquals(fragments.size(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(fragments.get(i).getTag(), routes.get(i));
+            assertEquals(fragments.get(i).getArguments().getString(Router.ROUTE), routes.get(i));
+        }
+        assertNull(fragments.get(1).getArguments().getString("source"));
+        assertEquals(fragments.get(2).getArguments().getString("source"), "push");
+        assertEquals(fragmentManager.getBackStackEntryCount(), 0);
+        assertEquals(router.getNavigationHistory().getRoutes(), routes);
+        assertEquals(Router.currentRoute, "app://www.app.com/webview");
+
+        router.releaseHost();
+        fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+        router.setFragmentManager(fragmentManager).setFragmentContainerView(1);
+
+        /* With the back stack, one entry per route, popped one at a time */
+        router.execRoutes(routes, args, NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+        fragmentManager.executePendingTransactions();
+
+        assertEquals(fragmentManager.getAddedFragments(1).size(), 3);
+        assertEquals(fragmentManager.getBackStackEntryCount(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(fragmentManager.getBackStackEntryAt(i).getName().startsWith(routes.get(i) + "_"));
+        }
+        assertEquals(router.getNavigationHistory().getRoutes(), routes);
+
+        fragmentManager.popBackStackImmediate();
+        assertEquals(fragmentManager.getVisibleFragment(1).getTag(), "app://www.app.com/pdfViewer/a.pdf");
+        assertEquals(Router.currentRoute, "app://www.app.com/pdfViewer/a.pdf");
+    }
+
+    @Test
+    public void testExecRoutesCoalescing() throws Exception {
+        final List<Runnable> windows = new ArrayList<>();
+        NavigationQueue queue = new NavigationQueue(router, 300, new NavigationQueue.Scheduler() {
+            @Override
+            public void schedule(Runnable task, long delayMillis) {
+                windows.add(task);
+            }
+        });
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+        router.setFragmentManager(fragmentManager).setFragmentContainerView(1);
+        router.setNavigationQueue(queue);
+        List<String> routes = Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/webview");
+
+        try {
+            router.execRoutes(routes, NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+            router.execRoutes(routes, NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+            assertEquals(windows.size(), 1);
+            assertFalse(fragmentManager.hasPendingTransactions());
+            assertEquals(queue.getCoalescedCount(), 1);
+
+            /* The same last route with another stack supersedes the pending one */
+            router.execRoutes(Arrays.asList("app://www.app.com/pdfViewer/a.pdf", "app://www.app.com/webview"),
+                    NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+            assertEquals(queue.getDroppedCount(), 1);
+
+            windows.get(0).run();
+            fragmentManager.executePendingTransactions();
+            assertEquals(queue.getExecutedCount(), 1);
+            assertEquals(fragmentManager.getBackStackEntryCount(), 2);
+            assertEquals(router.getNavigationHistory().getRoutes(),
+                    Arrays.asList("app://www.app.com/pdfViewer/a.pdf", "app://www.app.com/webview"));
+            assertEquals(Router.currentRoute, "app://www.app.com/webview");
+        } finally {
+            router.setNavigationQueue(null);
+        }
+    }
+
+    @Test
+    public void testFragmentReuseTags() throws Exception {
+        String mappedRoute = "app://www.app.com/laws/notes/article/i:{articleRevisionId}/s:{noteNumber}";
+        router.setFragmentReuse(mappedRoute, true);
+
+        try {
+            String tag = FragmentPool.tagOf(router.resolveRoute("app://www.app.com/laws/notes/article/12/b3?x=1"));
+            assertEquals(tag, mappedRoute + "#articleRevisionId=12&noteNumber=b3");
+            assertEquals(FragmentPool.tagOf(router.resolveRoute("app://www.app.com/laws/notes/article/12/b3?x=2")), tag);
+            assertTrue(router.getFragmentPool().isReusableTag(tag));
+            assertFalse(router.getFragmentPool().isReusableTag("app://www.app.com/laws/notes/article/12/b3"));
+
+            router.setFragmentReuse(mappedRoute, false);
+            assertFalse(router.getFragmentPool().isReusableTag(tag));
+        } finally {
+            router.setFragmentReuse(mappedRoute, false);
+        }
+    }
+
+    @Test
+    public void testFragmentReuse() throws Exception {
+        String mappedRoute = "app://www.app.com/laws/i:{lawId}/articles/i:{articleId}";
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+        router.setFragmentManager(fragmentManager).setFragmentContainerView(1);
+        router.setFragmentReuse(mappedRoute, true);
+        NavOptions replace = NavOptions.of(NavOptions.REPLACE_FRAGMENT);
+
+        try {
+            router.navigate("app://www.app.com/laws/1/articles/2?tab=text", replace);
+            fragmentManager.executePendingTransactions();
+            Fragment article = fragmentManager.getVisibleFragment(1);
+            assertEquals(article.getTag(), mappedRoute + "#lawId=1&articleId=2");
+
+            /* Replaced, the fragment is detached and kept */
+            router.navigate("app://www.app.com/pdfViewer/a.pdf", replace);
+            fragmentManager.executePendingTransactions();
+            assertTrue(article.isDetached());
+            assertEquals(router.getFragmentPool().size(), 1);
+
+            /* Replacing with the same wildcard values attaches it again with the new arguments */
+            router.navigate("app://www.app.com/laws/1/articles/2?tab=notes", replace);
+            fragmentManager.executePendingTransactions();
+            assertSame(fragmentManager.getVisibleFragment(1), article);
+            assertEquals(fragmentManager.getAddedFragments(1).size(), 1);
+            assertEquals(article.getArguments().getString(Router.ROUTE), "app://www.app.com/laws/1/articles/2?tab=notes");
+            assertEquals(router.getFragmentPool().getReuseCount(), 1);
+            assertEquals(router.getFragmentPool().size(), 0);
+
+            /* Added on top of another fragment, a reused fragment would stay below it, so a new one is added */
+            router.navigate("app://www.app.com/pdfViewer/a.pdf", replace);
+            router.navigate("app://www.app.com/laws/1/articles/2?tab=text", NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+            fragmentManager.executePendingTransactions();
+            Fragment added = fragmentManager.getVisibleFragment(1);
+            assertNotSame(added, article);
+            assertEquals(added.getTag(), "app://www.app.com/laws/1/articles/2?tab=text");
+            assertEquals(fragmentManager.getAddedFragments(1).size(), 2);
+            assertEquals(fragmentManager.getBackStackEntryCount(), 1);
+            assertTrue(article.isDetached());
+            assertEquals(router.getFragmentPool().getReuseCount(), 1);
+            assertEquals(router.getFragmentPool().size(), 1);
+        } finally {
+            router.setFragmentReuse(mappedRoute, false);
+            router.releaseHost();
+        }
+    }
+
+    @Test
+    public void testOptionalSlug() throws Exception {
+        router.registerActionRoute("app://www.app.com/news/i:{newsId}/{slug?}", new MockAction1());
+
+        Route route = router.resolveRoute("app://www.app.com/news/5");
+        assertEquals(route.getMappedRoute(), "app://www.app.com/news/i:{newsId}/{slug?}");
+        assertEquals(route.getArguments().size(), 1);
+        assertNull(route.getWildcards().get("slug"));
+
+        route = router.resolveRoute("app://www.app.com/news/5/big-news-today?x=1");
+        assertEquals(route.getWildcards().get("newsId"), 5);
+        assertEquals(route.getWildcards().get("slug"), "big-news-today");
+        assertEquals(router.resolveRoute("app://www.app.com/news/5/headline").getWildcards().get("slug"), "headline");
+        assertNull(router.resolveRoute("app://www.app.com/news/5/headline/more"));
+        assertNull(router.resolveRoute("app://www.app.com"));
+
+        Router.RouteMatch match = router.checkRouteKeys("app://www.app.com/news/7/big-news",
+                router.getActionRoutes().keySet());
+        assertEquals(match.getArguments().get("slug"), "big-news");
+
+        try {
+            router.registerActionRoute("app://www.app.com/news/i:{id}", new MockAction1());
+            fail();
+        } catch (Router.DuplicateRouteException e) {
+            assertTrue(e.getMessage().contains("ambiguous with the route app://www.app.com/news/i:{newsId}/{slug?}"));
+        }
+    }
+
+    @Test
+    public void testSlugStripping() throws Exception {
+        router.registerFragmentRoute("app://www.app.com/pages/terms-of-use", MockFragment4.class);
+        router.setResolutionCacheSize(8);
+
+        try {
+            /* Hyphenated segments match as they are unless a route declares an optional slug */
+            assertEquals(router.resolveRoute("app://www.app.com/pages/terms-of-use").getResult(), MockFragment4.class);
+            assertEquals(router.resolveRoute("app://www.app.com/pdfViewer/civil-code.pdf").getWildcards().get("filename"),
+                    "civil-code.pdf");
+            assertEquals(router.resolveRoute("app://www.app.com/profile/settings/me/big-news").getWildcards().get("slug"),
+                    "big-news");
+            assertNull(router.resolveRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la"));
+            assertNull(router.checkRouteKeys("app://www.app.com/laws/1981/articles/14563/lala-lala-la",
+                    router.getFragmentRoutes().keySet()));
+
+            /* Opted in, trailing slugs are stripped from every given route, cached resolutions included */
+            router.setSlugStripping(true);
+            assertEquals(router.resolveRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la").getMappedRoute(),
+                    "app://www.app.com/laws/i:{lawId}/articles/i:{articleId}");
+            assertNull(router.resolveRoute("app://www.app.com/pages/terms-of-use"));
+            assertTrue(router.newScope().isValidRoute("app://www.app.com/laws/1981/articles/14563/lala-lala-la"));
+        } finally {
+            router.setResolutionCacheSize(0);
+        }
+    }
+
+    @Test
+    public void testHostPartitions() throws Exception {
+        MockAction1 wildcardAction = new MockAction1();
+        router.registerActionRoute("https://*.app.com/promo/s:{code}", wildcardAction)
+                .registerActionRoute("https://www.app.com/promo/special", new MockAction1())
+                .registerActionRoute("https://*.eu.app.com/promo/s:{code}", new MockAction1());
+
+        assertEquals(router.resolveRoute("https://www.app.com/promo/special").getMappedRoute(), "https://www.app.com/promo/special");
+        assertEquals(router.resolveRoute("https://www.app.com/promo/summer").getResult(), wildcardAction);
+        assertEquals(router.resolveRoute("https://m.eu.app.com/promo/summer").getMappedRoute(), "https://*.eu.app.com/promo/s:{code}");
+        assertNull(router.resolveRoute("https://app.com/promo/summer"));
+        assertNull(router.resolveRoute("http://www.app.com/promo/summer"));
+        assertNull(router.resolveRoute("https://www.other.com/promo/summer"));
+
+        assertNull(router.resolveRoute("app:/files/1"));
+        assertNull(router.resolveRoute("mailto:someone@app.com"));
+        assertNull(router.resolveRoute("/files/1"));
+        assertNull(router.checkRouteKeys("mailto:someone@app.com", router.getActionRoutes().keySet()));
+        assertEquals(router.checkRouteKeys("https://m.app.com/promo/summer", router.getActionRoutes().keySet())
+                .getMatchedRoute(), "https://*.app.com/promo/s:{code}");
+    }
+
+    @Test
+    public void testNavigationHistory() throws Exception {
+        NavigationHistory history = new NavigationHistory(4);
+        history.push("app://www.app.com/laws/1", RouteKind.ACTIVITY, null, null);
+        history.push("app://www.app.com/laws/1/articles/2", RouteKind.FRAGMENT, "articles_1", null);
+        history.push("app://www.app.com/laws/notes/b3", RouteKind.FRAGMENT, "notes_2", null);
+        history.push("app://www.app.com/laws/1/articles/2", RouteKind.FRAGMENT, "articles_3", null);
+
+        assertEquals(history.indexOf("app://www.app.com/laws/1/articles/2"), 3);
+        assertEquals(history.indexOf("app://www.app.com/laws/2"), -1);
+
+        /* Full, the oldest route is dropped */
+        history.push("app://www.app.com/laws/notes/c4", RouteKind.FRAGMENT, "notes_4", null);
+        assertEquals(history.size(), 4);
+        assertFalse(history.contains("app://www.app.com/laws/1"));
+        assertEquals(history.indexOf("app://www.app.com/laws/notes/b3"), 1);
+
+        /* Entries not yet executed by the fragment manager are not popped */
+        assertFalse(history.retainBackStack(Arrays.asList("articles_1", "notes_2")));
+        assertEquals(history.size(), 4);
+        assertFalse(history.retainBackStack(Arrays.asList("articles_1", "notes_2", "articles_3", "notes_4")));
+
+        /* The back stack was popped up to notes_2: the routes from articles_3 up are popped */
+        assertTrue(history.retainBackStack(Arrays.asList("articles_1", "notes_2")));
+        assertEquals(history.getRoutes(), Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/laws/notes/b3"));
+        assertEquals(history.indexOf("app://www.app.com/laws/1/articles/2"), 0);
+        assertFalse(history.retainBackStack(Arrays.asList("articles_1", "notes_2")));
+
+        history.retainBackStack(new ArrayList<String>());
+        assertEquals(history.size(), 0);
+        assertNull(history.getTopRoute());
+    }
+
+    @Test
+    public void testNavigationHistoryFollowsBackStack() throws Exception {
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        router.setFragmentFactory(fragmentManager);
+        router.setFragmentManager(fragmentManager).setFragmentContainerView(1);
+        NavigationHistory history = router.getNavigationHistory();
+
+        /* The back stack changes once per entry, while the entries above it are still pending */
+        router.execRoutes(Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/pdfViewer/a.pdf",
+                "app://www.app.com/webview"), NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+        fragmentManager.executePendingTransactions();
+
+        assertEquals(fragmentManager.getBackStackEntryCount(), 3);
+        assertEquals(history.getRoutes(), Arrays.asList("app://www.app.com/laws/1/articles/2",
+                "app://www.app.com/pdfViewer/a.pdf", "app://www.app.com/webview"));
+        assertEquals(Router.currentRoute, "app://www.app.com/webview");
+
+        fragmentManager.popBackStackImmediate();
+        assertEquals(history.getTopRoute(), "app://www.app.com/pdfViewer/a.pdf");
+        assertEquals(Router.currentRoute, "app://www.app.com/pdfViewer/a.pdf");
+
+        /* Popping back to a fragment, then pushing another one before the pop is executed */
+        router.navigateUpTo("app://www.app.com/laws/1/articles/2");
+        router.navigate("app://www.app.com/pdfViewer/b.pdf", NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+        fragmentManager.executePendingTransactions();
+
+        assertEquals(fragmentManager.getBackStackEntryCount(), 2);
+        assertEquals(history.getRoutes(), Arrays.asList("app://www.app.com/laws/1/articles/2",
+                "app://www.app.com/pdfViewer/b.pdf"));
+        assertEquals(Router.currentRoute, "app://www.app.com/pdfViewer/b.pdf");
+        assertEquals(fragmentManager.getVisibleFragment(1).getTag(), "app://www.app.com/pdfViewer/b.pdf");
+
+        /* Back to the bottom fragment */
+        router.navigateUpTo("app://www.app.com/laws/1/articles/2");
+        fragmentManager.executePendingTransactions();
+        assertEquals(fragmentManager.getBackStackEntryCount(), 1);
+        assertEquals(history.getRoutes(), Arrays.asList("app://www.app.com/laws/1/articles/2"));
+        assertEquals(Router.currentRoute, "app://www.app.com/laws/1/articles/2");
+        assertEquals(fragmentManager.getVisibleFragment(1).getTag(), "app://www.app.com/laws/1/articles/2");
+    }
+
+    @Test
+    public void testNavigateUpTo() throws Exception {
+        Router.currentRoute = null;
+
+        /* Action routes are not kept in the history, so they are executed again */
+        router.navigateUpTo("app://www.app.com/files/3");
+        assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+        assertEquals(router.getNavigationHistory().size(), 0);
+
+        try {
+            router.navigateUpTo("app://www.app.com/unknown");
+            fail();
+        } catch (Router.RouteNotFoundException e) {
+            assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+        }
+    }
+
+    @Test
+    public void testScopes() throws Exception {
+        Router scope = router.newScope();
+        Router otherScope = router.newScope();
+        MockListener listener = new MockListener();
+        scope.addOnRouteChangeListener(listener);
+        Router.currentRoute = null;
+
+        assertTrue(scope.isScope());
+        assertFalse(router.isScope());
+        assertTrue(scope.getRouteTable() == router.getRouteTable());
+        scope.registerActionRoute("app://www.app.com/settings", new MockAction1());
+        assertTrue(router.isValidRoute("app://www.app.com/settings"));
+        assertTrue(otherScope.isValidRoute("app://www.app.com/settings"));
+
+        scope.execRoute("app://www.app.com/files/3");
+        assertEquals(scope.getCurrentRoute(), "app://www.app.com/files/3");
+        assertNull(otherScope.getCurrentRoute());
+        assertNull(Router.currentRoute);
+        assertTrue(listener.isAfterChange());
+
+        otherScope.execRoute("app://www.app.com/settings");
+        assertEquals(scope.getCurrentRoute(), "app://www.app.com/files/3");
+
+        router.execRoute("app://www.app.com/files/4");
+        assertEquals(router.getCurrentRoute(), "app://www.app.com/files/4");
+        assertEquals(Router.currentRoute, "app://www.app.com/files/4");
+
+        /* Resetting a scope only resets its host */
+        scope.reset();
+        assertNull(scope.getCurrentRoute());
+        assertTrue(router.isValidRoute("app://www.app.com/settings"));
+        assertEquals(Router.currentRoute, "app://www.app.com/files/4");
+    }
+
+    @Test
+    public void testScopeResolvesAsync() throws Exception {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        final AtomicReference<Route> resolved = new AtomicReference<>();
+        HistogramRouterMetrics metrics = new HistogramRouterMetrics();
+        HistogramRouterMetrics scopeMetrics = new HistogramRouterMetrics();
+        router.setMetrics(metrics).setBackgroundExecutor(direct).setCallbackExecutor(direct);
+        Router scope = router.newScope().setMetrics(scopeMetrics);
+
+        try {
+            /* The scope uses the executors of its router, and reports to its own metrics */
+            scope.resolveAsync("app://www.app.com/files/5", new Router.ResolveCallback() {
+                @Override
+                public void onRouteResolved(String givenRoute, Route route) {
+                    resolved.set(route);
+                }
+            });
+
+            assertEquals(resolved.get().getMappedRoute(), "app://www.app.com/files/i:{fileId}");
+            assertEquals(scopeMetrics.getRouteStats("app://www.app.com/files/i:{fileId}").getResolution().getCount(), 1);
+            assertNull(metrics.getRouteStats("app://www.app.com/files/i:{fileId}"));
+        } finally {
+            router.setMetrics(null);
+            router.setBackgroundExecutor(null).setCallbackExecutor(null);
+        }
+    }
+
+    @Test
+    public void testScopeReleasedWhenHostFinishes() throws Exception {
+        Application application = mock(Application.class);
+        Activity activity = mock(Activity.class);
+        when(activity.getApplication()).thenReturn(application);
+        ArgumentCaptor<Application.ActivityLifecycleCallbacks> callbacks =
+                ArgumentCaptor.forClass(Application.ActivityLifecycleCallbacks.class);
+
+        Router scope = router.newScope().attach(activity, 1);
+        verify(application).registerActivityLifecycleCallbacks(callbacks.capture());
+
+        /* Destroyed for a re-creation, the scope keeps following the lifecycle */
+        callbacks.getValue().onActivityDestroyed(activity);
+        verify(application, never()).unregisterActivityLifecycleCallbacks(callbacks.getValue());
+
+        /* Finishing, it is released without releaseHost */
+        scope.attach(activity, 1);
+        when(activity.isFinishing()).thenReturn(true);
+        callbacks.getValue().onActivityDestroyed(activity);
+        verify(application).unregisterActivityLifecycleCallbacks(callbacks.getValue());
+
+        /* The next host registers again */
+        scope.attach(activity, 1);
+        verify(application, times(2)).registerActivityLifecycleCallbacks(callbacks.capture());
+    }
+
+    @Test
+    public void testPendingNavigations() throws Exception {
+        PendingNavigations pending = new PendingNavigations(3);
+        List<PendingNavigations.Navigation> navigations = new ArrayList<>();
+        for (String route : Arrays.asList("app://www.app.com/files/1", "app://www.app.com/files/2",
+                "app://www.app.com/files/1", "app://www.app.com/files/3")) {
+            navigations.add(new PendingNavigations.Navigation(new ArrayList<String>(), new ArrayList<Route>(),
+                    route, router.resolveRoute(route), null, NavOptions.NONE));
+            pending.add(navigations.get(navigations.size() - 1));
+        }
+
+        /* A superseded navigation keeps its place */
+        assertEquals(pending.getRoutes(), Arrays.asList("app://www.app.com/files/1", "app://www.app.com/files/2",
+                "app://www.app.com/files/3"));
+        assertEquals(pending.getCoalescedCount(), 1);
+        List<PendingNavigations.Navigation> drained = pending.drain();
+        assertSame(drained.get(0), navigations.get(2));
+        assertEquals(pending.size(), 0);
+
+        for (PendingNavigations.Navigation navigation : drained) {
+            pending.add(navigation);
+        }
+        pending.add(navigations.get(0));
+        pending.add(new PendingNavigations.Navigation(new ArrayList<String>(), new ArrayList<Route>(),
+                "app://www.app.com/files/4", router.resolveRoute("app://www.app.com/files/4"), null, NavOptions.NONE));
+        assertEquals(pending.getDroppedCount(), 1);
+
+        /* The same route above another stack of routes is another navigation */
+        pending.add(new PendingNavigations.Navigation(Arrays.asList("app://www.app.com/files/2"),
+                Arrays.asList(router.resolveRoute("app://www.app.com/files/2")),
+                "app://www.app.com/files/4", router.resolveRoute("app://www.app.com/files/4"), null, NavOptions.NONE));
+        assertEquals(pending.getRoutes(), Arrays.asList("app://www.app.com/files/3", "app://www.app.com/files/4",
+                "app://www.app.com/files/4"));
+        assertEquals(pending.getCoalescedCount(), 2);
+        assertEquals(pending.getDroppedCount(), 2);
+        pending.clear();
+
+        /* Without a host navigations are not pending, they are executed as before */
+        Router.currentRoute = null;
+        router.execRoute("app://www.app.com/files/3");
+        assertEquals(router.getCurrentRoute(), "app://www.app.com/files/3");
+        assertEquals(router.getPendingNavigations().size(), 0);
+    }
+
+    @Test
+    public void testNavigationsAfterStateSaved() throws Exception {
+        Router.currentRoute = null;
+        router.setHostStateSaved(true);
+
+        /* Only fragment transactions wait for the host to resume */
+        router.execRoute("app://www.app.com/files/3");
+        assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+
+        router.execRoute("app://www.app.com/laws/1/articles/2");
+        router.execRoute("app://www.app.com/files/4");
+        router.navigate("app://www.app.com/laws/1/articles/2", NavOptions.of(NavOptions.ADD_TO_BACKSTACK));
+        assertEquals(Router.currentRoute, "app://www.app.com/files/3");
+        assertEquals(router.getPendingNavigations().getRoutes(),
+                Arrays.asList("app://www.app.com/laws/1/articles/2", "app://www.app.com/files/4"));
+        assertEquals(router.getPendingNavigations().getCoalescedCount(), 1);
+
+        router.releaseHost();
+        assertEquals(router.getPendingNavigations().size(), 0);
+        router.execRoute("app://www.app.com/files/4");
+        assertEquals(Router.currentRoute, "app://www.app.com/files/4");
+    }
+
+    @Test
+    public void testHostLifecycle() throws Exception {
+        Application application = mock(Application.class);
+        Activity activity = mock(Activity.class);
+        FakeFragmentManager fragmentManager = new FakeFragmentManager();
+        when(activity.getApplication()).thenReturn(application);
+        when(activity.getFragmentManager()).thenReturn(fragmentManager);
+        ArgumentCaptor<Application.ActivityLifecycleCallbacks> captor =
+                ArgumentCaptor.forClass(Application.ActivityLifecycleCallbacks.class);
+        router.setFragmentFactory(fragmentManager);
+
+        try {
+            router.attach(activity, 1);
+            verify(application).registerActivityLifecycleCallbacks(captor.capture());
+            Application.ActivityLifecycleCallbacks callbacks = captor.getValue();
+
+            /* Fragments wait for the host that saved its state to resume */
+            callbacks.onActivitySaveInstanceState(activity, new Bundle());
+            router.execRoute("app://www.app.com/laws/1/articles/2");
+            assertEquals(router.getPendingNavigations().size(), 1);
+
+            callbacks.onActivityResumed(mock(Activity.class));
+            assertEquals(router.getPendingNavigations().size(), 1);
+
+            callbacks.onActivityResumed(activity);
+            assertEquals(router.getPendingNavigations().size(), 0);
+            fragmentManager.executePendingTransactions();
+            assertEquals(fragmentManager.getVisibleFragment(1).getTag(), "app://www.app.com/laws/1/articles/2");
+
+            /* Destroyed, the host is gone until the next one attaches; other activities are ignored */
+            callbacks.onActivityDestroyed(mock(Activity.class));
+            assertTrue(router.getFragmentManager() == fragmentManager);
+
+            callbacks.onActivityDestroyed(activity);
+            assertNull(router.getFragmentManager());
+            router.execRoute("app://www.app.com/files/3");
+            assertEquals(router.getPendingNavigations().getRoutes(), Arrays.asList("app://www.app.com/files/3"));
+            assertEquals(router.getCurrentRoute(), "app://www.app.com/laws/1/articles/2");
+            assertEquals(router.getNavigationHistory().size(), 1);
+
+            Activity recreated = mock(Activity.class);
+            when(recreated.getApplication()).thenReturn(application);
+            when(recreated.getFragmentManager()).thenReturn(fragmentManager);
+            router.attach(recreated, 1);
+            assertEquals(router.getPendingNavigations().size(), 0);
+            assertEquals(router.getCurrentRoute(), "app://www.app.com/files/3");
+            verify(application).registerActivityLifecycleCallbacks(callbacks);
+        } finally {
+            router.releaseHost();
+        }
+        verify(application).unregisterActivityLifecycleCallbacks(captor.getValue());
+    }
+
+    @Test
+    public void testHostReferencedWeakly() throws Exception {
+        WeakReference<Context> host = attachTemporaryHost();
+        for (int i = 0; i < 100 && host.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(host.get());
+        assertNull(router.getContext());
+        assertNull(router.getFragmentManager());
+
+        /* A collected host is gone: navigations wait for the next one */
+        router.execRoute("app://www.app.com/files/3");
+        assertEquals(router.getPendingNavigations().getRoutes(), Arrays.asList("app://www.app.com/files/3"));
+
+        router.setContext(new MockActivity1());
+        router.replayPendingNavigations();
+        assertEquals(router.getCurrentRoute(), "app://www.app.com/files/3");
+        router.releaseHost();
+    }
+
+    private WeakReference<Context> attachTemporaryHost() {
+        Activity activity = new MockActivity1();
+        router.setContext(activity).setFragmentManager(new FakeFragmentManager());
+        return new WeakReference<Context>(activity);
+    }
+
+    @Test
+    public void testIntWildcardBeyondLongRange() throws Exception {
+        assertNull(router.resolveRoute("app://www.app.com/files/92233720368547758070"));
+        assertEquals(router.resolveRoute("app://www.app.com/pdfViewer/92233720368547758070").getResult(), MockFragment3.class);
+    }
+
     public static class MockActivity1 extends Activity {
     }
 
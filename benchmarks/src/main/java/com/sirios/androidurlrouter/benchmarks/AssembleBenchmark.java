@@ -0,0 +1,71 @@
+package com.sirios.androidurlrouter.benchmarks;
+
+import android.app.Fragment;
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.sirios.androidurlrouter.Route;
+import com.sirios.androidurlrouter.Router;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of turning an already resolved route into fragment arguments or intent extras,
+ * i.e. {@link Router#assembleFragment(Route)} and {@link Router#assembleIntent(Route, Bundle)}.
+ *
+ * @author S1ri0S
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssembleBenchmark {
+
+    @Param({"0", "5", "20"})
+    public int queryParamCount;
+
+    private Router router;
+    private Route fragmentRoute;
+    private Route activityRoute;
+    private Bundle extraArguments;
+
+    @Setup
+    public void setUp() {
+        router = BenchmarkRoutes.newRouter(10);
+
+        String query = BenchmarkRoutes.queryUrl(10, queryParamCount);
+        query = query.substring(BenchmarkRoutes.hitUrl(10).length());
+
+        fragmentRoute = router.resolveRoute(BenchmarkRoutes.HOST + "/section1/civil-code/articles/21" + query);
+        fragmentRoute.setRoute(BenchmarkRoutes.HOST + "/section1/civil-code/articles/21" + query);
+        activityRoute = router.resolveRoute(BenchmarkRoutes.HOST + "/section1/1843/related" + query);
+        activityRoute.setRoute(BenchmarkRoutes.HOST + "/section1/1843/related" + query);
+
+        extraArguments = new Bundle();
+        extraArguments.putString("origin", "benchmark");
+    }
+
+    @Benchmark
+    public Fragment assembleFragment() {
+        return router.assembleFragment(fragmentRoute);
+    }
+
+    @Benchmark
+    public Intent assembleIntent() {
+        return router.assembleIntent(activityRoute, extraArguments);
+    }
+}
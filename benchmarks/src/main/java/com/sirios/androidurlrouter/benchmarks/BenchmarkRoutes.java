@@ -0,0 +1,109 @@
+package com.sirios.androidurlrouter.benchmarks;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.content.Context;
+
+import com.sirios.androidurlrouter.Route;
+import com.sirios.androidurlrouter.RouteTable;
+import com.sirios.androidurlrouter.Router;
+import com.sirios.androidurlrouter.RouterAction;
+
+/**
+ * Route tables shaped like the ones of a real application, shared by the benchmarks.<br/>
+ * Every section of the application maps a handful of routes mixing literals, int and string wildcards,
+ * so that the size of a table grows with the number of sections.
+ *
+ * @author S1ri0S
+ */
+final class BenchmarkRoutes {
+
+    static final String HOST = "app://www.app.com";
+
+    private static final int ROUTES_PER_SECTION = 5;
+
+    private BenchmarkRoutes() {
+    }
+
+    /**
+     * @param routeCount The number of routes to map
+     * @return A router mapping the given number of routes
+     */
+    static Router newRouter(int routeCount) {
+        RouteTable.Builder routes = RouteTable.builder();
+
+        for (int i = 0; i < routeCount; i++) {
+            int section = i / ROUTES_PER_SECTION;
+
+            switch (i % ROUTES_PER_SECTION) {
+                case 0:
+                    routes.addFragmentRoute(HOST + "/section" + section, BenchmarkFragment.class);
+                    break;
+                case 1:
+                    routes.addFragmentRoute(HOST + "/section" + section + "/i:{itemId}", BenchmarkFragment.class);
+                    break;
+                case 2:
+                    routes.addActivityRoute(HOST + "/section" + section + "/i:{itemId}/related", BenchmarkActivity.class);
+                    break;
+                case 3:
+                    routes.addFragmentRoute(HOST + "/section" + section + "/s:{name}/articles/i:{articleId}/{slug?}",
+                            BenchmarkFragment.class);
+                    break;
+                default:
+                    routes.addActionRoute(HOST + "/section" + section + "/i:{itemId}/share", new BenchmarkAction());
+                    break;
+            }
+        }
+
+        return new Router().registerAll(routes);
+    }
+
+    /**
+     * @return A url matching a route of the last section of a table of the given size
+     */
+    static String hitUrl(int routeCount) {
+        int section = (routeCount - 1) / ROUTES_PER_SECTION;
+        return HOST + "/section" + section + "/1843";
+    }
+
+    /**
+     * @return A url that shares its first segments with the mapped routes but matches none of them
+     */
+    static String missUrl(int routeCount) {
+        int section = (routeCount - 1) / ROUTES_PER_SECTION;
+        return HOST + "/section" + section + "/1843/unknown";
+    }
+
+    /**
+     * @return A url matching a route with both kinds of wildcards, followed by its optional slug
+     */
+    static String slugUrl(int routeCount) {
+        int section = (routeCount - 1) / ROUTES_PER_SECTION;
+        return HOST + "/section" + section + "/civil-code/articles/21/the-law-of-contracts-and-obligations";
+    }
+
+    /**
+     * @return A url matching a route, carrying the given number of query parameters
+     */
+    static String queryUrl(int routeCount, int queryParamCount) {
+        StringBuilder url = new StringBuilder(hitUrl(routeCount));
+
+        for (int i = 0; i < queryParamCount; i++) {
+            url.append(i == 0 ? '?' : '&').append("param").append(i).append('=').append("value%20").append(i);
+        }
+        return url.toString();
+    }
+
+    public static class BenchmarkFragment extends Fragment {
+    }
+
+    public static class BenchmarkActivity extends Activity {
+    }
+
+    public static class BenchmarkAction extends RouterAction {
+
+        @Override
+        public void doAction(Context activityContext, Route route) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sirios.androidurlrouter.benchmarks;
+
+import com.sirios.androidurlrouter.Route;
+import com.sirios.androidurlrouter.Router;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Router#resolveRoute(String)} for route tables of growing size.<br/>
+ * The resolution cache is disabled, so that every call matches the url against the route index.
+ * {@link #checkRouteKeys()} scans the mapped routes in order instead, for comparison.
+ *
+ * @author S1ri0S
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveRouteBenchmark {
+
+    private static final int QUERY_PARAM_COUNT = 20;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int routeCount;
+
+    private Router router;
+    private Set<String> fragmentRoutes;
+    private String hitUrl;
+    private String missUrl;
+    private String slugUrl;
+    private String queryUrl;
+
+    @Setup
+    public void setUp() {
+        router = BenchmarkRoutes.newRouter(routeCount);
+        fragmentRoutes = router.getFragmentRoutes().keySet();
+        hitUrl = BenchmarkRoutes.hitUrl(routeCount);
+        missUrl = BenchmarkRoutes.missUrl(routeCount);
+        slugUrl = BenchmarkRoutes.slugUrl(routeCount);
+        queryUrl = BenchmarkRoutes.queryUrl(routeCount, QUERY_PARAM_COUNT);
+
+        if (router.resolveRoute(hitUrl) == null || router.resolveRoute(slugUrl) == null
+                || router.resolveRoute(queryUrl) == null || router.resolveRoute(missUrl) != null) {
+            throw new IllegalStateException("The benchmark urls do not resolve as expected");
+        }
+    }
+
+    @Benchmark
+    public Route hit() {
+        return router.resolveRoute(hitUrl);
+    }
+
+    @Benchmark
+    public Route miss() {
+        return router.resolveRoute(missUrl);
+    }
+
+    @Benchmark
+    public Route slug() {
+        return router.resolveRoute(slugUrl);
+    }
+
+    @Benchmark
+    public Route queryHeavy() {
+        return router.resolveRoute(queryUrl);
+    }
+
+    @Benchmark
+    public Router.RouteMatch checkRouteKeys() {
+        return router.checkRouteKeys(hitUrl, fragmentRoutes);
+    }
+}
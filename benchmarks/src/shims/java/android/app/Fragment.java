@@ -0,0 +1,53 @@
+package android.app;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the framework Fragment. Like the real one, {@link #instantiate(Context, String)}
+ * caches the fragment classes it loads.
+ *
+ * @author S1ri0S
+ */
+public class Fragment {
+
+    private static final Map<String, Class<?>> classMap = new HashMap<>();
+
+    private Bundle arguments;
+
+    public static Fragment instantiate(Context context, String fname) {
+        return instantiate(context, fname, null);
+    }
+
+    public static Fragment instantiate(Context context, String fname, Bundle args) {
+        try {
+            Class<?> clazz;
+            synchronized (classMap) {
+                clazz = classMap.get(fname);
+                if (clazz == null) {
+                    clazz = Class.forName(fname);
+                    classMap.put(fname, clazz);
+                }
+            }
+
+            Fragment fragment = (Fragment) clazz.newInstance();
+            if (args != null) {
+                fragment.setArguments(args);
+            }
+            return fragment;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate fragment " + fname, e);
+        }
+    }
+
+    public Bundle getArguments() {
+        return arguments;
+    }
+
+    public void setArguments(Bundle args) {
+        arguments = args;
+    }
+}
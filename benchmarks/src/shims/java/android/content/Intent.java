@@ -0,0 +1,88 @@
+package android.content;
+
+import android.os.Bundle;
+
+import java.io.Serializable;
+
+/**
+ * JVM stand-in for the framework Intent, keeping its extras in a {@link Bundle} like the real one.
+ *
+ * @author S1ri0S
+ */
+public class Intent {
+
+    public static final int FLAG_ACTIVITY_CLEAR_TOP = 0x04000000;
+    public static final int FLAG_ACTIVITY_SINGLE_TOP = 0x20000000;
+
+    private final Class<?> component;
+    private int flags;
+    private Bundle extras;
+
+    public Intent(Context packageContext, Class<?> cls) {
+        component = cls;
+    }
+
+    public Class<?> getComponent() {
+        return component;
+    }
+
+    public Intent addFlags(int flags) {
+        this.flags |= flags;
+        return this;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public Bundle getExtras() {
+        return extras != null ? new Bundle(extras) : null;
+    }
+
+    public Intent putExtras(Bundle extras) {
+        extras().putAll(extras);
+        return this;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        extras().putBoolean(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        extras().putInt(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long value) {
+        extras().putLong(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        extras().putString(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String[] value) {
+        extras().putStringArray(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Serializable value) {
+        extras().putSerializable(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Bundle value) {
+        extras().putBundle(name, value);
+        return this;
+    }
+
+    private Bundle extras() {
+        if (extras == null) {
+            extras = new Bundle();
+        }
+        return extras;
+    }
+}
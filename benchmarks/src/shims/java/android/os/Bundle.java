@@ -0,0 +1,115 @@
+package android.os;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM stand-in for the framework Bundle, whose static initialization needs the native Parcel.<br/>
+ * Backed by a map like the real one, so benchmarks see comparable costs.
+ *
+ * @author S1ri0S
+ */
+public final class Bundle {
+
+    private final Map<String, Object> map;
+
+    public Bundle() {
+        map = new HashMap<>();
+    }
+
+    public Bundle(int capacity) {
+        map = new HashMap<>(capacity);
+    }
+
+    public Bundle(Bundle b) {
+        map = new HashMap<>(b.map);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public Object get(String key) {
+        return map.get(key);
+    }
+
+    public void remove(String key) {
+        map.remove(key);
+    }
+
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    public void putAll(Bundle bundle) {
+        map.putAll(bundle.map);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        map.put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        map.put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        map.put(key, value);
+    }
+
+    public void putString(String key, String value) {
+        map.put(key, value);
+    }
+
+    public void putStringArray(String key, String[] value) {
+        map.put(key, value);
+    }
+
+    public void putStringArrayList(String key, ArrayList<String> value) {
+        map.put(key, value);
+    }
+
+    public void putSerializable(String key, Serializable value) {
+        map.put(key, value);
+    }
+
+    public void putBundle(String key, Bundle value) {
+        map.put(key, value);
+    }
+
+    public boolean getBoolean(String key) {
+        Object value = map.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    public int getInt(String key) {
+        Object value = map.get(key);
+        return value instanceof Integer ? (Integer) value : 0;
+    }
+
+    public long getLong(String key) {
+        Object value = map.get(key);
+        return value instanceof Long ? (Long) value : 0L;
+    }
+
+    public String getString(String key) {
+        Object value = map.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public Bundle getBundle(String key) {
+        Object value = map.get(key);
+        return value instanceof Bundle ? (Bundle) value : null;
+    }
+}